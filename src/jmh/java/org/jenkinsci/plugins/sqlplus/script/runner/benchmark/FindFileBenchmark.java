@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.FileLocator;
+import org.jenkinsci.plugins.sqlplus.script.runner.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hudson.FilePath;
+
+/**
+ * SQL*Plus and TNSNAMES.ORA lookup in synthetic ORACLE_HOME trees of up to
+ * 100k files, the way {@link org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusRunner}
+ * looks for them: in <code>bin</code> and <code>network/admin</code> first,
+ * then below the whole home.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindFileBenchmark {
+
+	private static final String SQLPLUS = "sqlplus";
+	private static final String TNSNAMES_ORA = "tnsnames.ora";
+	private static final String[] SKIPPED = { "inventory", "jdk", "OPatch", ".patch_storage" };
+
+	private static final int DIRS_PER_LEVEL = 20;
+
+	@Param({ "1000", "10000", "100000" })
+	public int files;
+
+	/** SQL*Plus in bin, or only deep in the tree, as in unusual installations */
+	@Param({ "bin", "deep" })
+	public String layout;
+
+	private File home;
+
+	private FilePath homePath;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+		home = Files.createTempDirectory("sqlplus-jmh-home").toFile();
+		homePath = new FilePath(home);
+
+		// a quarter in the directories skipped by the search
+		int skipped = files / 4;
+		for (int i = 0; i < files; i++) {
+			File root = i < skipped ? new File(home, SKIPPED[i % SKIPPED.length]) : new File(home, "lib");
+			File dir = new File(new File(root, "d" + (i % DIRS_PER_LEVEL)), "s" + (i / DIRS_PER_LEVEL % DIRS_PER_LEVEL));
+			dir.mkdirs();
+			new File(dir, "f" + i + ".dat").createNewFile();
+		}
+
+		File sqlplusDir = "bin".equals(layout) ? new File(home, "bin") : new File(home, "lib/d1");
+		sqlplusDir.mkdirs();
+		new File(sqlplusDir, SQLPLUS).createNewFile();
+		File adminDir = new File(home, "network/admin");
+		adminDir.mkdirs();
+		new File(adminDir, TNSNAMES_ORA).createNewFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		Files.walkFileTree(home.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Benchmark
+	public FilePath findSQLPlus() throws IOException, InterruptedException {
+		FilePath found = FileUtil.findFile(SQLPLUS, homePath.child("bin"), 1);
+		if (found == null)
+			found = FileUtil.findFile(SQLPLUS, homePath, FileLocator.DEFAULT_MAX_DEPTH);
+		return found;
+	}
+
+	@Benchmark
+	public FilePath findTNSNames() throws IOException, InterruptedException {
+		return FileUtil.findFile(TNSNAMES_ORA, homePath.child("network").child("admin"), 1);
+	}
+
+	/**
+	 * Worst case: every directory within reach is visited.
+	 */
+	@Benchmark
+	public FilePath findMissing() throws IOException, InterruptedException {
+		return FileUtil.findFile("missing.ora", homePath, FileLocator.DEFAULT_MAX_DEPTH);
+	}
+
+}
@@ -0,0 +1,163 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hudson.FilePath;
+
+/**
+ * Exit detection, exit appending and user defined script preparation, for
+ * scripts from 1 KB to a few GB.
+ *
+ * Script files are generated once per size, in the temporary-file directory,
+ * so the bigger sizes need that much free disk space. User defined scripts are
+ * held in a string, so they stop at 64 MB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+
+	private static final String STATEMENT = "SELECT 'JENKINS' FROM DUAL;\n";
+	private static final String EXIT = "exit;\n";
+
+	@State(Scope.Benchmark)
+	public static class ScriptFile {
+
+		@Param({ "1KB", "1MB", "100MB", "2GB" })
+		public String size;
+
+		@Param({ "true", "false" })
+		public boolean withExit;
+
+		File file;
+
+		long length;
+
+		@Setup(Level.Trial)
+		public void generate() throws IOException {
+			file = File.createTempFile("sqlplus-jmh-", ".sql");
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+			try {
+				write(out, bytes(size), withExit);
+			} finally {
+				out.close();
+			}
+			length = file.length();
+		}
+
+		/**
+		 * Drops what the last invocation appended.
+		 */
+		@Setup(Level.Invocation)
+		public void truncate() throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() {
+			file.delete();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ScriptContent {
+
+		@Param({ "1KB", "1MB", "64MB" })
+		public String size;
+
+		String content;
+
+		@Setup(Level.Trial)
+		public void generate() {
+			StringBuilder builder = new StringBuilder((int) bytes(size));
+			while (builder.length() + STATEMENT.length() <= bytes(size))
+				builder.append(STATEMENT);
+			content = builder.toString();
+		}
+	}
+
+	@Benchmark
+	public boolean hasExitCode(ScriptFile script) {
+		return FileUtil.hasExitCode(new FilePath(script.file));
+	}
+
+	@Benchmark
+	public void addExitInTheEnd(ScriptFile script) throws IOException, InterruptedException {
+		FileUtil.addExitInTheEnd(new FilePath(script.file));
+	}
+
+	@Benchmark
+	public String prepareInlineScript(ScriptContent script) {
+		return FileUtil.prepareScript(script.content, true);
+	}
+
+	/**
+	 * Writes statements up to <code>size</code> bytes, then the exit command.
+	 */
+	static void write(OutputStream out, long size, boolean withExit) throws IOException {
+		byte[] statement = STATEMENT.getBytes(StandardCharsets.UTF_8);
+		byte[] block = new byte[statement.length * 2048];
+		for (int i = 0; i < block.length; i += statement.length)
+			System.arraycopy(statement, 0, block, i, statement.length);
+
+		long written = 0;
+		while (written + block.length <= size) {
+			out.write(block);
+			written += block.length;
+		}
+		while (written + statement.length <= size) {
+			out.write(statement);
+			written += statement.length;
+		}
+		if (withExit)
+			out.write(EXIT.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return bytes of a size like <code>512KB</code>, <code>1MB</code> or
+	 *         <code>4GB</code>
+	 */
+	static long bytes(String size) {
+		String upper = size.trim().toUpperCase(Locale.ENGLISH);
+		long unit = 1;
+		if (upper.endsWith("KB"))
+			unit = 1L << 10;
+		else if (upper.endsWith("MB"))
+			unit = 1L << 20;
+		else if (upper.endsWith("GB"))
+			unit = 1L << 30;
+		String number = unit == 1 ? upper : upper.substring(0, upper.length() - 2);
+		return Long.parseLong(number.trim()) * unit;
+	}
+
+}
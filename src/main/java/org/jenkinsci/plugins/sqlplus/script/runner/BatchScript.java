@@ -0,0 +1,160 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import hudson.FilePath;
+import hudson.console.LineTransformationOutputStream;
+
+/**
+ * Driver script running many scripts in one SQL*Plus session, so the logon
+ * happens once.
+ *
+ * Each script is included between <code>PROMPT</code> markers. The driver
+ * stops on the first SQL or OS error, rolling back the uncommitted changes
+ * of the failed script, and the markers in the output tell which scripts
+ * ran, which one failed and how long each one took.
+ */
+public class BatchScript {
+
+	private static final String MARKER_PREFIX = "JENKINS-SQLPLUS-BATCH-";
+	private static final String BEGIN = " BEGIN ";
+	private static final String END = " END ";
+	private static final String NEW_LINE = "\n";
+
+	private final List<FilePath> scripts;
+
+	private final List<String> afterEach;
+
+	private final String marker;
+
+	private final long[] begin;
+
+	private final long[] end;
+
+	private final ByteArrayOutputStream[] outputs;
+
+	public BatchScript(List<FilePath> scripts) {
+		this(scripts, null);
+	}
+
+	/**
+	 * @param afterEach
+	 *            statements run after each script, before it counts as
+	 *            finished, or <code>null</code>
+	 */
+	public BatchScript(List<FilePath> scripts, List<String> afterEach) {
+		this.scripts = scripts;
+		this.afterEach = afterEach;
+		this.marker = MARKER_PREFIX + UUID.randomUUID();
+		this.begin = new long[scripts.size()];
+		this.end = new long[scripts.size()];
+		this.outputs = new ByteArrayOutputStream[scripts.size()];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = new ByteArrayOutputStream();
+		}
+	}
+
+	/**
+	 * @param exit
+	 *            whether the driver ends with the exit command
+	 */
+	public String getContent(boolean exit) {
+
+		StringBuilder content = new StringBuilder();
+		content.append("WHENEVER SQLERROR EXIT FAILURE ROLLBACK").append(NEW_LINE);
+		content.append("WHENEVER OSERROR EXIT FAILURE ROLLBACK").append(NEW_LINE);
+		for (int i = 0; i < scripts.size(); i++) {
+			content.append("PROMPT ").append(marker).append(BEGIN).append(i).append(NEW_LINE);
+			content.append("@\"").append(scripts.get(i).getRemote()).append('"').append(NEW_LINE);
+			if (afterEach != null)
+				content.append(afterEach.get(i)).append(NEW_LINE);
+			content.append("PROMPT ").append(marker).append(END).append(i).append(NEW_LINE);
+		}
+		if (exit)
+			content.append("exit;").append(NEW_LINE);
+		return content.toString();
+	}
+
+	/**
+	 * @return stream for the SQL*Plus output, copying it to <code>out</code>
+	 *         without the markers
+	 */
+	public OutputStream parse(OutputStream out) {
+		return new Output(out);
+	}
+
+	/**
+	 * Result of each script, from the markers seen so far.
+	 *
+	 * @param exitCode
+	 *            SQL*Plus exit code, given to the script that did not finish
+	 */
+	public List<ScriptResult> getResults(String instance, int exitCode) throws IOException {
+
+		List<ScriptResult> results = new ArrayList<ScriptResult>();
+		for (int i = 0; i < scripts.size(); i++) {
+			String script = scripts.get(i).getRemote();
+			String excerpt = SQLPlusRunner.getExcerpt(outputs[i]);
+			if (begin[i] == 0) {
+				results.add(new ScriptResult(script, instance, ScriptResult.Status.NOT_RUN, exitCode, 0, excerpt));
+			} else if (end[i] == 0) {
+				int failed = exitCode == 0 ? -1 : exitCode;
+				results.add(new ScriptResult(script, instance, failed, System.currentTimeMillis() - begin[i], excerpt));
+			} else {
+				results.add(new ScriptResult(script, instance, 0, end[i] - begin[i], excerpt));
+			}
+		}
+		return results;
+	}
+
+	private class Output extends LineTransformationOutputStream {
+
+		private final OutputStream out;
+
+		private int current;
+
+		Output(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		protected void eol(byte[] b, int len) throws IOException {
+
+			String line = new String(b, 0, len, StandardCharsets.US_ASCII).trim();
+			if (line.startsWith(marker)) {
+				long now = System.currentTimeMillis();
+				String[] step = line.substring(marker.length()).trim().split(" ");
+				if (step.length == 2) {
+					int index = Integer.parseInt(step[1]);
+					if (BEGIN.trim().equals(step[0])) {
+						begin[index] = now;
+						current = index;
+					} else {
+						end[index] = now;
+					}
+				}
+				return;
+			}
+			out.write(b, 0, len);
+			outputs[current].write(b, 0, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			forceEol();
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.acegisecurity.Authentication;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import hudson.model.queue.Tasks;
+import hudson.security.ACL;
+
+/**
+ * Index of the username and password credentials by id, for each credentials
+ * context, so builds do not search every credential store for theirs.
+ *
+ * Credentials are looked up in the folder of the job, with the authentication
+ * the build runs as, so folder credentials are found. The whole index is
+ * cleared when a credential store is saved, and an entry is rebuilt after its
+ * time to live, for providers that do not save anything when they change.
+ */
+public class CredentialsCache {
+
+	/** how long an index is used, in milliseconds */
+	public static final long TTL = Long.getLong(CredentialsCache.class.getName() + ".ttl", 600000L);
+
+	private static final String SEPARATOR = "|";
+
+	private static final ConcurrentMap<String, Index> CACHE = new ConcurrentHashMap<String, Index>();
+
+	/**
+	 * @return the username and password credentials with this id visible to
+	 *         the job of the build, or <code>null</code>
+	 */
+	public static StandardUsernamePasswordCredentials find(String credentialsId, Run<?, ?> build) {
+
+		if (credentialsId == null || credentialsId.length() < 1)
+			return null;
+
+		Job<?, ?> job = build.getParent();
+		Authentication authentication = ACL.SYSTEM;
+		if (job instanceof Queue.Task) {
+			Authentication runAs = Tasks.getAuthenticationOf((Queue.Task) job);
+			if (runAs != null)
+				authentication = runAs;
+		}
+
+		ItemGroup<?> context = job.getParent();
+		String key = context.getFullName() + SEPARATOR + authentication.getName();
+		long now = System.currentTimeMillis();
+		Index index = CACHE.get(key);
+		if (index == null || now - index.created >= TTL) {
+			index = new Index(CredentialsProvider.lookupCredentials(StandardUsernamePasswordCredentials.class,
+					context, authentication, Collections.<DomainRequirement> emptyList()), now);
+			CACHE.put(key, index);
+		}
+
+		StandardUsernamePasswordCredentials credentials = index.credentials.get(credentialsId);
+		if (credentials != null)
+			CredentialsProvider.track(build, credentials);
+		return credentials;
+	}
+
+	public static void invalidate() {
+		CACHE.clear();
+	}
+
+	private static class Index {
+
+		private final Map<String, StandardUsernamePasswordCredentials> credentials = new HashMap<String, StandardUsernamePasswordCredentials>();
+
+		private final long created;
+
+		Index(List<StandardUsernamePasswordCredentials> found, long created) {
+			// the nearest store comes first and wins
+			for (StandardUsernamePasswordCredentials c : found) {
+				if (!credentials.containsKey(c.getId()))
+					credentials.put(c.getId(), c);
+			}
+			this.created = created;
+		}
+	}
+
+	/**
+	 * Credentials are saved with the global store, their folder or their
+	 * user.
+	 */
+	@Extension
+	public static class StoreListener extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup || o instanceof User)
+				invalidate();
+		}
+	}
+
+}
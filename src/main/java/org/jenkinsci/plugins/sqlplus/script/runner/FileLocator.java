@@ -0,0 +1,112 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Looks for a file by name below a directory, on the node that owns the
+ * directory.
+ *
+ * The search stops at the first match, does not go deeper than
+ * {@link #getMaxDepth()} levels and skips the big ORACLE_HOME directories
+ * that never hold SQL*Plus or TNSNAMES.ORA. Inside each directory a file
+ * with the exact name is checked before any subdirectory is entered.
+ */
+public class FileLocator extends MasterToSlaveFileCallable<String> {
+
+	private static final long serialVersionUID = 2771308416243605457L;
+
+	public static final int DEFAULT_MAX_DEPTH = Integer.getInteger(FileLocator.class.getName() + ".maxDepth", 3);
+
+	private static final Set<String> SKIPPED_DIRS = Collections
+			.unmodifiableSet(new HashSet<String>(Arrays.asList("inventory", "jdk", "OPatch", ".patch_storage")));
+
+	private final String name;
+
+	private final int maxDepth;
+
+	public FileLocator(String name) {
+		this(name, DEFAULT_MAX_DEPTH);
+	}
+
+	public FileLocator(String name, int maxDepth) {
+		this.name = name;
+		this.maxDepth = maxDepth;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	@Override
+	public String invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+		Path found = find(f.toPath(), name, maxDepth);
+		return found == null ? null : found.toString();
+	}
+
+	/**
+	 * @param root
+	 *            directory to search
+	 * @param name
+	 *            file name, compared ignoring case
+	 * @param maxDepth
+	 *            1 looks only at the files directly inside <code>root</code>
+	 * @return first file found, or <code>null</code>
+	 */
+	public static Path find(final Path root, final String name, int maxDepth) throws IOException {
+
+		if (!Files.isDirectory(root))
+			return null;
+
+		final Path[] found = new Path[1];
+		Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (!dir.equals(root) && SKIPPED_DIRS.contains(String.valueOf(dir.getFileName())))
+					return FileVisitResult.SKIP_SUBTREE;
+				Path candidate = dir.resolve(name);
+				if (Files.isRegularFile(candidate)) {
+					found[0] = candidate;
+					return FileVisitResult.TERMINATE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && name.equalsIgnoreCase(String.valueOf(file.getFileName()))) {
+					found[0] = file;
+					return FileVisitResult.TERMINATE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				// unreadable entries and symbolic link loops are not a match
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return found[0];
+	}
+
+}
@@ -1,116 +1,330 @@
 package org.jenkinsci.plugins.sqlplus.script.runner;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import hudson.FilePath;
-import hudson.model.Run;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
 
 public class FileUtil {
 
+	private static final Logger LOGGER = Logger.getLogger(FileUtil.class.getName());
+
 	private static final int SQLPLUS_STR_LENGTH = 5;
 	private static final String LAST_CMD_BEFORE_EXIT = "\n;\n";
 	private static final String SQLPLUS_EXIT = "exit;";
-	private static final String SQL_TEMP_SCRIPT = "temp-script-";
 	private static final String SQL_PREFIX = ".sql";
+	private static final int TAIL_BLOCK_SIZE = 8192;
+	private static final int MAX_EXIT_LINE_LENGTH = 1024;
+	private static final String SHA_256 = "SHA-256";
+	private static final int DIGEST_BUFFER_SIZE = 8192;
+	private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
 
 	public static boolean hasExitCode(FilePath filePath) {
 
-		boolean found = false;
 		try {
+			return filePath.act(new HasExitCode());
+		} catch (IOException exc) {
+			LOGGER.log(Level.WARNING, "Unable to read " + filePath, exc);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
 
-			InputStream in = filePath.read();
-			Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
-			BufferedReader br = new BufferedReader(reader);
+	/**
+	 * Checks whether the last line with at least 5 characters is
+	 * <code>exit;</code>, reading the file backwards from its end, so only the
+	 * tail of a large script is read.
+	 */
+	public static boolean hasExitCode(File file) {
 
-			String lastLine = "";
-			String line;
-			while ((line = br.readLine()) != null) {
-				if (line.length() >= SQLPLUS_STR_LENGTH)
-					lastLine = line;
-			}
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				byte[] block = new byte[TAIL_BLOCK_SIZE];
+				// current line, backwards
+				byte[] line = new byte[MAX_EXIT_LINE_LENGTH];
+				int lineLength = 0;
 
-			if (lastLine.trim().equalsIgnoreCase(SQLPLUS_EXIT))
-				found = true;
+				long position = raf.length();
+				while (position > 0) {
+					int length = (int) Math.min(block.length, position);
+					position -= length;
+					raf.seek(position);
+					raf.readFully(block, 0, length);
 
-			br.close();
-			reader.close();
-			in.close();
+					for (int i = length - 1; i >= 0; i--) {
+						if (block[i] == '\n') {
+							Boolean exit = isExitLine(line, lineLength);
+							if (exit != null)
+								return exit;
+							lineLength = 0;
+						} else if (lineLength == line.length) {
+							// too long to be the exit command
+							return false;
+						} else {
+							line[lineLength++] = block[i];
+						}
+					}
+				}
+
+				Boolean exit = isExitLine(line, lineLength);
+				return exit != null && exit;
+			} finally {
+				raf.close();
+			}
 		} catch (IOException exc) {
-			System.out.println(exc);
-		} catch (InterruptedException ie) {
-			System.out.println(ie);
+			LOGGER.log(Level.WARNING, "Unable to read " + file, exc);
 		}
-		return found;
+		return false;
 	}
 
+	/**
+	 * @param reversedLine
+	 *            line bytes, last one first
+	 * @return whether it is the exit command, or <code>null</code> for lines
+	 *         too short to count
+	 */
+	private static Boolean isExitLine(byte[] reversedLine, int length) {
 
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = reversedLine[length - 1 - i];
+		}
+		String line = new String(bytes, StandardCharsets.UTF_8);
+		if (line.endsWith("\r"))
+			line = line.substring(0, line.length() - 1);
+		if (line.length() < SQLPLUS_STR_LENGTH)
+			return null;
+		return line.trim().equalsIgnoreCase(SQLPLUS_EXIT);
+	}
 
-	public static void addExit(String content, FilePath filePath) throws IOException {
+	/**
+	 * Appends the exit command to the file, on the node that holds it.
+	 */
+	public static void addExitInTheEnd(FilePath filePath) throws IOException, InterruptedException {
+		filePath.act(new AddExitInTheEnd());
+	}
 
+	/**
+	 * Appends the exit command to the file, without reading or rewriting it.
+	 */
+	public static void addExitInTheEnd(File file) throws IOException {
+
+		OutputStream out = new FileOutputStream(file, true);
 		try {
+			out.write((LAST_CMD_BEFORE_EXIT + SQLPLUS_EXIT).getBytes(StandardCharsets.UTF_8));
+		} finally {
+			out.close();
+		}
+	}
 
-			if (content != null)
-				filePath.write(content + LAST_CMD_BEFORE_EXIT + SQLPLUS_EXIT, StandardCharsets.UTF_8.name());
+	/**
+	 * Converts a script saved as UTF-8 with byte order mark, or as UTF-16, to
+	 * plain UTF-8. Files without byte order mark are left untouched.
+	 *
+	 * @return encoding the file was converted from, or <code>null</code>
+	 */
+	public static String normalizeEncoding(File file) throws IOException {
 
-		} catch (IOException | InterruptedException e) {
-			e.printStackTrace();
+		byte[] head = new byte[UTF8_BOM.length];
+		int read = 0;
+		InputStream in = new FileInputStream(file);
+		try {
+			int n;
+			while (read < head.length && (n = in.read(head, read, head.length - read)) > 0)
+				read += n;
+		} finally {
+			in.close();
 		}
-	}
 
-	public static void addExitInTheEnd(FilePath filePath) throws IOException {
+		Charset charset;
+		int bomLength;
+		if (read >= 3 && head[0] == UTF8_BOM[0] && head[1] == UTF8_BOM[1] && head[2] == UTF8_BOM[2]) {
+			charset = StandardCharsets.UTF_8;
+			bomLength = 3;
+		} else if (read >= 2 && head[0] == (byte) 0xFF && head[1] == (byte) 0xFE) {
+			charset = StandardCharsets.UTF_16LE;
+			bomLength = 2;
+		} else if (read >= 2 && head[0] == (byte) 0xFE && head[1] == (byte) 0xFF) {
+			charset = StandardCharsets.UTF_16BE;
+			bomLength = 2;
+		} else {
+			return null;
+		}
 
+		File converted = File.createTempFile(file.getName(), SQL_PREFIX, file.getAbsoluteFile().getParentFile());
 		try {
-			
-            String content = filePath.readToString();                        
-            filePath.write(content + LAST_CMD_BEFORE_EXIT + SQLPLUS_EXIT, StandardCharsets.UTF_8.name());
-		} catch (IOException | InterruptedException e) {
-			e.printStackTrace();
+			in = new FileInputStream(file);
+			try {
+				Writer out = new OutputStreamWriter(new FileOutputStream(converted), StandardCharsets.UTF_8);
+				try {
+					for (long skipped = 0; skipped < bomLength;)
+						skipped += in.skip(bomLength - skipped);
+					Reader reader = new InputStreamReader(in, charset);
+					char[] buffer = new char[TAIL_BLOCK_SIZE];
+					int n;
+					while ((n = reader.read(buffer)) > 0)
+						out.write(buffer, 0, n);
+				} finally {
+					out.close();
+				}
+			} finally {
+				in.close();
+			}
+			Files.move(converted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			converted.delete();
 		}
+		return charset.name();
+	}
 
+	/**
+	 * Prepares a script on the node that holds it.
+	 *
+	 * @see ScriptPreparation
+	 */
+	public static ScriptPreparation.Result prepareScript(FilePath filePath) throws IOException, InterruptedException {
+		return prepareScript(filePath, true);
 	}
 
-	@SuppressWarnings("static-access")
-	public static FilePath createTempScript(Run<?, ?> build, String content) {
+	public static ScriptPreparation.Result prepareScript(FilePath filePath, boolean addExit)
+			throws IOException, InterruptedException {
+		return filePath.act(new ScriptPreparation(addExit));
+	}
+
+	/**
+	 * Prepares a script held in memory, like {@link ScriptPreparation} does
+	 * with a file: drops the byte order mark and appends the exit command when
+	 * it is missing.
+	 */
+	public static String prepareScript(String content, boolean addExit) {
+
+		if (content.length() > 0 && content.charAt(0) == '\uFEFF')
+			content = content.substring(1);
+		if (addExit && !hasExitCode(content))
+			content = content + LAST_CMD_BEFORE_EXIT + SQLPLUS_EXIT;
+		return content;
+	}
+
+	/**
+	 * {@link #hasExitCode(File)} for a script held in memory.
+	 */
+	public static boolean hasExitCode(String content) {
+
+		int end = content.length();
+		while (end > 0) {
+			int start = content.lastIndexOf('\n', end - 1) + 1;
+			String line = content.substring(start, end);
+			if (line.endsWith("\r"))
+				line = line.substring(0, line.length() - 1);
+			if (line.length() >= SQLPLUS_STR_LENGTH)
+				return line.trim().equalsIgnoreCase(SQLPLUS_EXIT);
+			end = start - 1;
+		}
+		return false;
+	}
+
+	/**
+	 * Looks for a file below a directory, on the node that owns it.
+	 *
+	 * @return the file found, or <code>null</code>
+	 * @see FileLocator
+	 */
+	public static FilePath findFile(String name, FilePath directory, int maxDepth)
+			throws IOException, InterruptedException {
+
+		String found = directory.act(new FileLocator(name, maxDepth));
+		if (found == null)
+			return null;
+		return new FilePath(directory.getChannel(), found);
+	}
+
+	/**
+	 * @return SHA-256 of a file in hex, computed on the node that holds it
+	 */
+	public static String sha256(FilePath filePath) throws IOException, InterruptedException {
+		return filePath.act(new Sha256());
+	}
+
+	public static String sha256(File file) throws IOException {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(SHA_256);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				digest.update(buffer, 0, read);
+		} finally {
+			in.close();
+		}
+		return Util.toHexString(digest.digest());
+	}
+
+	public static String sha256(String content) {
 
-		FilePath filePath = null;
 		try {
+			return Util.toHexString(MessageDigest.getInstance(SHA_256).digest(content.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
-			filePath = new FilePath(build.getRootDir().createTempFile(SQL_TEMP_SCRIPT + System.currentTimeMillis(), SQL_PREFIX));
-			
-			filePath.write(content, StandardCharsets.UTF_8.name());
+	private static class HasExitCode extends MasterToSlaveFileCallable<Boolean> {
 
-			if (!FileUtil.hasExitCode(filePath))
-				addExit(content
-						, filePath);
+		private static final long serialVersionUID = 4180383436281953604L;
 
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		@Override
+		public Boolean invoke(File f, VirtualChannel channel) {
+			return hasExitCode(f);
 		}
-		return filePath;
+	}
 
+	private static class AddExitInTheEnd extends MasterToSlaveFileCallable<Void> {
+
+		private static final long serialVersionUID = -1790964427457364585L;
+
+		@Override
+		public Void invoke(File f, VirtualChannel channel) throws IOException {
+			addExitInTheEnd(f);
+			return null;
+		}
 	}
 
-	public static boolean findFile(String name, File file) {
+	private static class Sha256 extends MasterToSlaveFileCallable<String> {
 
-		boolean found = false;
-		File[] list = file.listFiles();
-		if (list != null)
-			for (File fil : list) {
-				if (fil.isDirectory()) {
-					findFile(name, fil);
-				} else if (name.equalsIgnoreCase(fil.getName())) {
-					found = true;
-				}
-			}
-		return found;
+		private static final long serialVersionUID = 7931436807452377043L;
+
+		@Override
+		public String invoke(File f, VirtualChannel channel) throws IOException {
+			return sha256(f);
+		}
 	}
 
 }
@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import hudson.EnvVars;
+
+/**
+ * What every SQL*Plus launch on a node needs for an ORACLE_HOME: the
+ * executable and the variables added to the environment of the build.
+ *
+ * Made once per node, ORACLE_HOME and custom locations, and reused while
+ * the {@link OracleHomeResolution} it was made from is the cached one.
+ */
+public class LaunchProfile implements Serializable {
+
+	private static final long serialVersionUID = -5617829150276637504L;
+
+	public static final String ENV_ORACLE_HOME = "ORACLE_HOME";
+	public static final String ENV_LD_LIBRARY_PATH = "LD_LIBRARY_PATH";
+	public static final String ENV_TNS_ADMIN = "TNS_ADMIN";
+
+	private static final String SEPARATOR = "|";
+
+	private static final ConcurrentMap<String, LaunchProfile> CACHE = new ConcurrentHashMap<String, LaunchProfile>();
+
+	private final transient OracleHomeResolution resolution;
+
+	private final String executable;
+
+	private final Map<String, String> environment;
+
+	private final String pathSeparator;
+
+	private LaunchProfile(OracleHomeResolution resolution, String executable, Map<String, String> environment,
+			String pathSeparator) {
+		this.resolution = resolution;
+		this.executable = executable;
+		this.environment = Collections.unmodifiableMap(environment);
+		this.pathSeparator = pathSeparator;
+	}
+
+	/**
+	 * @param customSQLPlusHome
+	 *            SQL*Plus executable to use instead of the one found, or
+	 *            <code>null</code>
+	 * @param customTNSAdmin
+	 *            TNS_ADMIN to use instead of the one found, or
+	 *            <code>null</code>
+	 * @param pathSeparator
+	 *            separator of library paths on the node
+	 * @throws RuntimeException
+	 *             if there is no SQL*Plus executable
+	 */
+	public static LaunchProfile get(String node, OracleHomeResolution resolution, String customSQLPlusHome,
+			String customTNSAdmin, String pathSeparator) {
+
+		String key = node + SEPARATOR + resolution.getOracleHome() + SEPARATOR + customSQLPlusHome + SEPARATOR
+				+ customTNSAdmin;
+		LaunchProfile profile = CACHE.get(key);
+		if (profile != null && profile.resolution == resolution)
+			return profile;
+
+		String executable = customSQLPlusHome != null && customSQLPlusHome.length() > 0 ? customSQLPlusHome
+				: resolution.getSqlplus();
+		if (executable == null)
+			throw new RuntimeException(Messages.SQLPlusRunner_missingSQLPlus());
+
+		Map<String, String> environment = new TreeMap<String, String>();
+		environment.put(ENV_ORACLE_HOME, resolution.getOracleHome());
+		environment.put(ENV_LD_LIBRARY_PATH, resolution.getLibraryPath());
+		String tnsAdmin = customTNSAdmin != null && customTNSAdmin.length() > 0 ? customTNSAdmin
+				: resolution.getTnsAdmin();
+		if (tnsAdmin != null)
+			environment.put(ENV_TNS_ADMIN, tnsAdmin);
+
+		profile = new LaunchProfile(resolution, executable, environment, pathSeparator);
+		CACHE.put(key, profile);
+		return profile;
+	}
+
+	public String getExecutable() {
+		return executable;
+	}
+
+	/**
+	 * @return variables set for SQL*Plus, without the ones of the build
+	 */
+	public Map<String, String> getEnvironment() {
+		return environment;
+	}
+
+	/**
+	 * @return TNS_ADMIN, or <code>null</code> if TNSNAMES.ORA was not found
+	 */
+	public String getTnsAdmin() {
+		return environment.get(ENV_TNS_ADMIN);
+	}
+
+	/**
+	 * @return a copy of the build environment with the variables of this
+	 *         profile, the Oracle libraries first in the library path
+	 */
+	public EnvVars apply(EnvVars build) {
+
+		EnvVars env = new EnvVars(build);
+		for (Map.Entry<String, String> variable : environment.entrySet()) {
+			String value = variable.getValue();
+			String current = env.get(variable.getKey());
+			if (ENV_LD_LIBRARY_PATH.equals(variable.getKey()) && current != null && current.length() > 0)
+				value = value + pathSeparator + current;
+			env.put(variable.getKey(), value);
+		}
+		return env;
+	}
+
+	@Override
+	public String toString() {
+		return executable + " " + environment;
+	}
+
+}
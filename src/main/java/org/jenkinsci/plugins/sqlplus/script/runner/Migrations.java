@@ -0,0 +1,351 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Versioned migration scripts of a directory, named like
+ * <code>V001__create_tables.sql</code>, and the ledger table that records the
+ * ones applied to each schema.
+ *
+ * Checksums are computed on the node holding the directory, and kept there
+ * by path, so only the files whose size or modification time changed are
+ * read again.
+ */
+public class Migrations {
+
+	public static final String TABLE = "JENKINS_SQLPLUS_MIGRATIONS";
+
+	private static final Pattern NAME = Pattern.compile("V(\\d+(?:[._]\\d+)*)__(.+)\\.sql",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final String MARKER = "JENKINS-SQLPLUS-MIGRATION ";
+	private static final String NEW_LINE = "\n";
+	private static final int DESCRIPTION_LENGTH = 200;
+
+	private static final int CACHE_SIZE = Integer.getInteger(Migrations.class.getName() + ".checksumCacheSize",
+			100000);
+
+	/** checksums by file path, on the node running the scan */
+	private static final Map<String, Checksum> CHECKSUMS = Collections
+			.synchronizedMap(new LinkedHashMap<String, Checksum>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Checksum> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+
+	private final FilePath directory;
+
+	private final List<Migration> migrations;
+
+	private Migrations(FilePath directory, List<Migration> migrations) {
+		this.directory = directory;
+		this.migrations = migrations;
+	}
+
+	/**
+	 * Lists the migrations of a directory in version order, on its node.
+	 */
+	public static Migrations scan(FilePath directory) throws IOException, InterruptedException {
+
+		List<Migration> migrations = directory.act(new Scan());
+		Collections.sort(migrations);
+		for (int i = 1; i < migrations.size(); i++) {
+			Migration previous = migrations.get(i - 1);
+			Migration migration = migrations.get(i);
+			if (previous.compareTo(migration) == 0)
+				throw new RuntimeException(Messages.Migrations_duplicateVersion(migration.getVersion(),
+						previous.getName(), migration.getName()));
+		}
+		return new Migrations(directory, migrations);
+	}
+
+	public List<Migration> getMigrations() {
+		return Collections.unmodifiableList(migrations);
+	}
+
+	/**
+	 * @return how many files were read to get their checksum
+	 */
+	public int getHashed() {
+		int hashed = 0;
+		for (Migration migration : migrations) {
+			if (migration.isHashed())
+				hashed++;
+		}
+		return hashed;
+	}
+
+	public FilePath getScript(Migration migration) {
+		return directory.child(migration.getName());
+	}
+
+	/**
+	 * Migrations not applied yet, in order.
+	 *
+	 * @param applied
+	 *            checksums of the applied migrations, by version
+	 * @throws RuntimeException
+	 *             if an applied migration changed, or a pending one is older
+	 *             than the last applied one
+	 */
+	public List<Migration> getPending(Map<String, String> applied) {
+
+		String last = null;
+		for (String version : applied.keySet()) {
+			if (last == null || compareVersions(version, last) > 0)
+				last = version;
+		}
+
+		List<Migration> pending = new ArrayList<Migration>();
+		for (Migration migration : migrations) {
+			String checksum = applied.get(migration.getVersion());
+			if (checksum != null) {
+				if (!checksum.equalsIgnoreCase(migration.getChecksum()))
+					throw new RuntimeException(Messages.Migrations_changed(migration.getName()));
+			} else if (last != null && compareVersions(migration.getVersion(), last) < 0) {
+				throw new RuntimeException(Messages.Migrations_outOfOrder(migration.getName(), last));
+			} else {
+				pending.add(migration);
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * Script creating the ledger table if it is missing, and listing the
+	 * applied migrations.
+	 *
+	 * @param exit
+	 *            whether the script ends with the exit command
+	 */
+	public static String getLedgerQuery(boolean exit) {
+
+		StringBuilder content = new StringBuilder();
+		content.append("WHENEVER SQLERROR EXIT FAILURE").append(NEW_LINE);
+		content.append("SET HEADING OFF FEEDBACK OFF PAGESIZE 0 LINESIZE 200 TRIMOUT ON").append(NEW_LINE);
+		content.append("DECLARE").append(NEW_LINE);
+		content.append(" n NUMBER;").append(NEW_LINE);
+		content.append("BEGIN").append(NEW_LINE);
+		content.append(" SELECT COUNT(*) INTO n FROM user_tables WHERE table_name = '").append(TABLE).append("';")
+				.append(NEW_LINE);
+		content.append(" IF n = 0 THEN").append(NEW_LINE);
+		content.append("  EXECUTE IMMEDIATE 'CREATE TABLE ").append(TABLE)
+				.append(" (version VARCHAR2(50) PRIMARY KEY, description VARCHAR2(").append(DESCRIPTION_LENGTH)
+				.append("), script VARCHAR2(260), checksum VARCHAR2(64) NOT NULL, applied_by VARCHAR2(200),"
+						+ " applied_on TIMESTAMP DEFAULT SYSTIMESTAMP NOT NULL)';")
+				.append(NEW_LINE);
+		content.append(" END IF;").append(NEW_LINE);
+		content.append("END;").append(NEW_LINE);
+		content.append("/").append(NEW_LINE);
+		content.append("SELECT '").append(MARKER).append("' || version || ' ' || checksum FROM ").append(TABLE)
+				.append(";").append(NEW_LINE);
+		if (exit)
+			content.append("exit;").append(NEW_LINE);
+		return content.toString();
+	}
+
+	/**
+	 * @return checksums of the applied migrations by version, from the output
+	 *         of {@link #getLedgerQuery(boolean)}
+	 */
+	public static Map<String, String> parseLedger(String output) {
+
+		Map<String, String> applied = new HashMap<String, String>();
+		for (String line : output.split("\\r?\\n")) {
+			line = line.trim();
+			if (!line.startsWith(MARKER))
+				continue;
+			String[] fields = line.substring(MARKER.length()).trim().split("\\s+");
+			if (fields.length == 2)
+				applied.put(fields[0], fields[1]);
+		}
+		return applied;
+	}
+
+	/**
+	 * @return statements recording a migration in the ledger table
+	 */
+	public static String getInsert(Migration migration, String appliedBy) {
+
+		String description = migration.getDescription();
+		if (description.length() > DESCRIPTION_LENGTH)
+			description = description.substring(0, DESCRIPTION_LENGTH);
+		return "INSERT INTO " + TABLE + " (version, description, script, checksum, applied_by) VALUES ("
+				+ literal(migration.getVersion()) + ", " + literal(description) + ", "
+				+ literal(migration.getName()) + ", " + literal(migration.getChecksum()) + ", " + literal(appliedBy)
+				+ ");" + NEW_LINE + "COMMIT;";
+	}
+
+	/**
+	 * A quoted SQL literal, without the <code>&amp;</code> SQL*Plus would take
+	 * for a substitution variable.
+	 */
+	private static String literal(String text) {
+		return "'" + String.valueOf(text).replace("'", "''").replace('&', '+') + "'";
+	}
+
+	/**
+	 * @return the version without leading zeros, with dots between its parts
+	 */
+	public static String normalizeVersion(String version) {
+
+		StringBuilder normalized = new StringBuilder();
+		for (String part : version.split("[._]")) {
+			if (normalized.length() > 0)
+				normalized.append('.');
+			String digits = part.replaceFirst("^0+(?=\\d)", "");
+			normalized.append(digits);
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Compares normalized versions part by part, as numbers.
+	 */
+	public static int compareVersions(String a, String b) {
+
+		String[] partsA = a.split("\\.");
+		String[] partsB = b.split("\\.");
+		for (int i = 0; i < Math.max(partsA.length, partsB.length); i++) {
+			String partA = i < partsA.length ? partsA[i] : "0";
+			String partB = i < partsB.length ? partsB[i] : "0";
+			// same digits without leading zeros, so longer is larger
+			int compare = partA.length() != partB.length() ? partA.length() - partB.length()
+					: partA.compareTo(partB);
+			if (compare != 0)
+				return compare;
+		}
+		return 0;
+	}
+
+	/**
+	 * A migration script.
+	 */
+	public static class Migration implements Serializable, Comparable<Migration> {
+
+		private static final long serialVersionUID = -2619357418245378215L;
+
+		private final String name;
+
+		private final String version;
+
+		private final String description;
+
+		private final String checksum;
+
+		private final boolean hashed;
+
+		public Migration(String name, String version, String description, String checksum, boolean hashed) {
+			this.name = name;
+			this.version = version;
+			this.description = description;
+			this.checksum = checksum;
+			this.hashed = hashed;
+		}
+
+		/**
+		 * @return file name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		/**
+		 * @return SHA-256 of the file
+		 */
+		public String getChecksum() {
+			return checksum;
+		}
+
+		/**
+		 * @return whether the file was read by this scan, not found in the
+		 *         checksum cache
+		 */
+		public boolean isHashed() {
+			return hashed;
+		}
+
+		@Override
+		public int compareTo(Migration o) {
+			return compareVersions(version, o.version);
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static class Checksum {
+
+		private final long size;
+
+		private final long lastModified;
+
+		private final String value;
+
+		Checksum(long size, long lastModified, String value) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.value = value;
+		}
+	}
+
+	private static class Scan extends MasterToSlaveFileCallable<List<Migration>> {
+
+		private static final long serialVersionUID = 4408735541376520950L;
+
+		@Override
+		public List<Migration> invoke(File f, VirtualChannel channel) throws IOException {
+
+			List<Migration> migrations = new ArrayList<Migration>();
+			File[] files = f.listFiles();
+			if (files == null)
+				throw new IOException(Messages.Migrations_missingDirectory(f));
+			for (File file : files) {
+				Matcher matcher = NAME.matcher(file.getName());
+				if (!file.isFile() || !matcher.matches())
+					continue;
+
+				String path = file.getAbsolutePath();
+				long size = file.length();
+				long lastModified = file.lastModified();
+				Checksum checksum = CHECKSUMS.get(path);
+				boolean hashed = checksum == null || checksum.size != size || checksum.lastModified != lastModified;
+				if (hashed) {
+					checksum = new Checksum(size, lastModified, FileUtil.sha256(file));
+					CHECKSUMS.put(path, checksum);
+				}
+				migrations.add(new Migration(file.getName(), normalizeVersion(matcher.group(1)),
+						matcher.group(2).replace('_', ' '), checksum.value, hashed));
+			}
+			return migrations;
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+
+/**
+ * Drops what {@link OracleHomeCache} and {@link SQLPlusVersionCache} know of
+ * a node when it goes offline, since the node coming back may be a different
+ * machine with the same name.
+ */
+@Extension
+public class NodeCacheListener extends ComputerListener {
+
+	@Override
+	public void onOffline(Computer c, OfflineCause cause) {
+		OracleHomeCache.invalidateNode(c.getName());
+		SQLPlusVersionCache.invalidateNode(c.getName());
+	}
+
+}
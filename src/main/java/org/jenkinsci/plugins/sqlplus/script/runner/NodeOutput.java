@@ -0,0 +1,259 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Launcher.ProcStarter;
+import hudson.Proc;
+import hudson.console.LineTransformationOutputStream;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import hudson.util.StreamTaskListener;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * SQL*Plus output written to files on the node running SQL*Plus, so it does
+ * not go through the controller.
+ *
+ * {@link #launch} starts SQL*Plus on that node, with the step timeout and
+ * fail fast handled there, and only a {@link Summary} comes back.
+ */
+public abstract class NodeOutput extends LineTransformationOutputStream {
+
+	/**
+	 * @return lines written
+	 */
+	public abstract long getLines();
+
+	/**
+	 * @return bytes written, before compression
+	 */
+	public abstract long getBytes();
+
+	/**
+	 * @return paths of the files written
+	 */
+	public abstract List<String> getFiles();
+
+	/**
+	 * @return whether the lines written now are data, which the output filter
+	 *         does not check for errors
+	 */
+	public boolean isData() {
+		return false;
+	}
+
+	/**
+	 * Runs SQL*Plus on the node of <code>file</code>, its output going to the
+	 * {@link NodeOutput} the factory opens there.
+	 *
+	 * @param input
+	 *            script for the standard input of SQL*Plus, or
+	 *            <code>null</code>
+	 * @param exits
+	 *            whether the script ends with the exit command, so the
+	 *            standard input can stay open for <code>EXIT</code> on
+	 *            timeout or abort
+	 * @param timeout
+	 *            milliseconds SQL*Plus may run, or 0 for no limit
+	 */
+	public static Summary launch(FilePath file, Factory factory, List<String> cmds, String input, boolean exits,
+			Map<String, String> env, long timeout, boolean failFast, PrintStream log)
+			throws IOException, InterruptedException {
+		return file.act(
+				new Launch(factory, cmds, input, exits, env, timeout, failFast, new RemoteOutputStream(log)));
+	}
+
+	/**
+	 * Opens the output on the node.
+	 */
+	public interface Factory extends Serializable {
+
+		/**
+		 * @param console
+		 *            build log, for the lines to show
+		 */
+		NodeOutput open(File file, PrintStream console) throws IOException;
+	}
+
+	/**
+	 * What the controller needs from a run.
+	 */
+	public static class Summary implements Serializable {
+
+		private static final long serialVersionUID = 2981734650347813527L;
+
+		private final int exitCode;
+
+		private final long lines;
+
+		private final long bytes;
+
+		private final List<String> files;
+
+		private final long duration;
+
+		private final List<String> errors;
+
+		private final int errorCount;
+
+		private final boolean killed;
+
+		private final boolean timedOut;
+
+		public Summary(int exitCode, long lines, long bytes, List<String> files, long duration, List<String> errors,
+				int errorCount, boolean killed, boolean timedOut) {
+			this.exitCode = exitCode;
+			this.lines = lines;
+			this.bytes = bytes;
+			this.files = files;
+			this.duration = duration;
+			this.errors = errors;
+			this.errorCount = errorCount;
+			this.killed = killed;
+			this.timedOut = timedOut;
+		}
+
+		public int getExitCode() {
+			return exitCode;
+		}
+
+		public long getLines() {
+			return lines;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public List<String> getFiles() {
+			return files;
+		}
+
+		/**
+		 * @return milliseconds SQL*Plus ran
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * @return the first errors, as listed by {@link SQLPlusOutputFilter}
+		 */
+		public List<String> getErrors() {
+			return errors;
+		}
+
+		public int getErrorCount() {
+			return errorCount;
+		}
+
+		/**
+		 * @return whether the process was killed on an error
+		 */
+		public boolean isKilled() {
+			return killed;
+		}
+
+		/**
+		 * @return whether the timeout stopped SQL*Plus
+		 */
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+	}
+
+	private static class Launch extends MasterToSlaveFileCallable<Summary> {
+
+		private static final long serialVersionUID = -7251960356710836493L;
+
+		private final Factory factory;
+
+		private final List<String> cmds;
+
+		private final String input;
+
+		private final boolean exits;
+
+		private final Map<String, String> env;
+
+		private final long timeout;
+
+		private final boolean failFast;
+
+		private final OutputStream console;
+
+		Launch(Factory factory, List<String> cmds, String input, boolean exits, Map<String, String> env,
+				long timeout, boolean failFast, OutputStream console) {
+			this.factory = factory;
+			this.cmds = cmds;
+			this.input = input;
+			this.exits = exits;
+			this.env = env;
+			this.timeout = timeout;
+			this.failFast = failFast;
+			this.console = console;
+		}
+
+		@Override
+		public Summary invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+
+			PrintStream log = new PrintStream(console, true, "UTF-8");
+			File directory = f.getParentFile();
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException(Messages.NodeOutput_noDirectory(directory));
+
+			// the deadline is set here, the clocks of the nodes may differ
+			long start = System.currentTimeMillis();
+			final long deadline = timeout > 0 ? start + timeout : 0;
+			final byte[] script = input == null ? null : input.getBytes(StandardCharsets.UTF_8);
+			final NodeOutput output = factory.open(f, log);
+			SQLPlusOutputFilter filter = new SQLPlusOutputFilter(output, failFast) {
+				@Override
+				protected boolean isChecked() {
+					return !output.isData();
+				}
+			};
+			SQLPlusWatchdog watchdog = new SQLPlusWatchdog(deadline, log);
+			int exitCode;
+			try {
+				ProcStarter starter = new Launcher.LocalLauncher(new StreamTaskListener(log)).launch().cmds(cmds)
+						.envs(env).stdout(filter).pwd(directory).quiet(true);
+				// an open input would keep a script without the exit command waiting
+				if (exits)
+					starter.writeStdin();
+				else if (script != null)
+					starter.stdin(new ByteArrayInputStream(script));
+				final Proc proc = starter.start();
+				filter.attach(proc);
+				exitCode = watchdog.await(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						if (exits && script != null)
+							SQLPlusWatchdog.feed(proc.getStdin(), script);
+						return proc.join();
+					}
+				}, proc, exits ? proc.getStdin() : null);
+			} finally {
+				filter.close();
+				output.close();
+			}
+			return new Summary(exitCode, output.getLines(), output.getBytes(),
+					new ArrayList<String>(output.getFiles()), System.currentTimeMillis() - start,
+					new ArrayList<String>(filter.getErrors()), filter.getErrorCount(), filter.isKilled(),
+					watchdog.isTimedOut());
+		}
+	}
+
+}
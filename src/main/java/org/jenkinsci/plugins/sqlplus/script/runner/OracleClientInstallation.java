@@ -0,0 +1,141 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.EnvironmentSpecific;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.NodeSpecific;
+import hudson.tools.ToolDescriptor;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstaller;
+import hudson.tools.ToolProperty;
+import jenkins.model.Jenkins;
+
+/**
+ * An Oracle client with SQL*Plus, either a full ORACLE_HOME or an Instant
+ * Client, set up in the global tool configuration. Its location can be
+ * changed per node, and it can be installed by an
+ * {@link OracleClientInstaller}.
+ *
+ * Its layout is known, so SQL*Plus and TNS_ADMIN are looked up at fixed
+ * places instead of searching the directory.
+ */
+public class OracleClientInstallation extends ToolInstallation
+		implements NodeSpecific<OracleClientInstallation>, EnvironmentSpecific<OracleClientInstallation> {
+
+	private static final long serialVersionUID = -1346328423541366716L;
+
+	private static final String BIN_DIR = "bin";
+	private static final String LIB_DIR = "lib";
+	private static final String NETWORK_DIR = "network";
+	private static final String ADMIN_DIR = "admin";
+	private static final String SQLPLUS = "sqlplus";
+	private static final String SQLPLUS_FOR_WINDOWS = "sqlplus.exe";
+	private static final String TNSNAMES_ORA = "tnsnames.ora";
+
+	@DataBoundConstructor
+	public OracleClientInstallation(String name, String home, List<? extends ToolProperty<?>> properties) {
+		super(name, home, properties);
+	}
+
+	@Override
+	public OracleClientInstallation forNode(Node node, TaskListener log) throws IOException, InterruptedException {
+		return new OracleClientInstallation(getName(), translateFor(node, log), getProperties().toList());
+	}
+
+	@Override
+	public OracleClientInstallation forEnvironment(EnvVars environment) {
+		return new OracleClientInstallation(getName(), environment.expand(getHome()), getProperties().toList());
+	}
+
+	/**
+	 * @return the installation with this name, or <code>null</code>
+	 */
+	public static OracleClientInstallation get(String name) {
+
+		DescriptorImpl descriptor = Jenkins.getInstance().getDescriptorByType(DescriptorImpl.class);
+		for (OracleClientInstallation installation : descriptor.getInstallations()) {
+			if (installation.getName().equals(name))
+				return installation;
+		}
+		return null;
+	}
+
+	/**
+	 * Installs the client with this name on the node if needed.
+	 *
+	 * @return its home on the node, with the build variables expanded
+	 * @throws AbortException
+	 *             if there is no such client, or the node is gone
+	 */
+	public static String getHome(String name, FilePath workspace, EnvVars env, TaskListener listener)
+			throws IOException, InterruptedException {
+
+		OracleClientInstallation installation = get(name);
+		if (installation == null)
+			throw new AbortException(Messages.OracleClientInstallation_notFound(name));
+		Computer computer = workspace.toComputer();
+		Node node = computer == null ? null : computer.getNode();
+		if (node == null)
+			throw new AbortException(Messages.OracleClientInstallation_noNode(name));
+		return installation.forNode(node, listener).forEnvironment(env).getHome();
+	}
+
+	/**
+	 * SQL*Plus in <code>bin</code>, as in an ORACLE_HOME, or in the client
+	 * directory, as in an Instant Client; TNS_ADMIN in
+	 * <code>network/admin</code> when it has a TNSNAMES.ORA.
+	 */
+	public static OracleHomeResolution resolve(FilePath home, boolean unix, String pathSeparator)
+			throws IOException, InterruptedException {
+
+		String sqlplus = unix ? SQLPLUS : SQLPLUS_FOR_WINDOWS;
+		FilePath executable = home.child(BIN_DIR).child(sqlplus);
+		if (!executable.exists())
+			executable = home.child(sqlplus);
+		FilePath tnsAdmin = home.child(NETWORK_DIR).child(ADMIN_DIR);
+		if (!tnsAdmin.child(TNSNAMES_ORA).exists())
+			tnsAdmin = null;
+
+		String libraryPath = home.child(LIB_DIR).getRemote() + pathSeparator + home.getRemote();
+		return new OracleHomeResolution(home.getRemote(), executable.exists() ? executable.getRemote() : null,
+				tnsAdmin == null ? null : tnsAdmin.getRemote(), libraryPath, OracleHomeCache.lastModified(home));
+	}
+
+	@Extension
+	@Symbol("oracleClient")
+	public static class DescriptorImpl extends ToolDescriptor<OracleClientInstallation> {
+
+		public DescriptorImpl() {
+			load();
+		}
+
+		@Override
+		public String getDisplayName() {
+			return Messages.OracleClientInstallation_displayName();
+		}
+
+		@Override
+		public List<? extends ToolInstaller> getDefaultInstallers() {
+			return Collections.singletonList(new OracleClientInstaller(null, null, null, null));
+		}
+
+		@Override
+		public void setInstallations(OracleClientInstallation... installations) {
+			super.setInstallations(installations);
+			save();
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstaller;
+import hudson.tools.ToolInstallerDescriptor;
+import hudson.util.FormValidation;
+
+/**
+ * Installs an {@link OracleClientInstallation} from a zip, such as an Oracle
+ * Instant Client with SQL*Plus, kept on the controller or at a URL.
+ *
+ * Each archive is unpacked in its own directory, named after its checksum,
+ * and verified before it is unpacked. Later builds on the node only check
+ * the marker left in that directory.
+ */
+public class OracleClientInstaller extends ToolInstaller {
+
+	private static final String MARKER = ".installedFrom";
+	private static final String ZIP = ".zip";
+	private static final String UTF_8 = "UTF-8";
+	private static final int VERSION_LENGTH = 16;
+	private static final Pattern SHA_256 = Pattern.compile("[0-9a-fA-F]{64}");
+
+	private final String archive;
+
+	private final String checksum;
+
+	private final String subdir;
+
+	@DataBoundConstructor
+	public OracleClientInstaller(String label, String archive, String checksum, String subdir) {
+		super(label);
+		this.archive = Util.fixEmptyAndTrim(archive);
+		this.checksum = Util.fixEmptyAndTrim(checksum);
+		this.subdir = Util.fixEmptyAndTrim(subdir);
+	}
+
+	/**
+	 * @return URL of the zip, or its path on the controller
+	 */
+	public String getArchive() {
+		return archive;
+	}
+
+	/**
+	 * @return SHA-256 of the zip, or <code>null</code> if it is not verified
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return directory of the zip with the client, like
+	 *         <code>instantclient_19_8</code>, or <code>null</code>
+	 */
+	public String getSubdir() {
+		return subdir;
+	}
+
+	@Override
+	public FilePath performInstallation(ToolInstallation tool, Node node, TaskListener log)
+			throws IOException, InterruptedException {
+		return install(preferredLocation(tool, node), log);
+	}
+
+	/**
+	 * Unpacks the archive below <code>root</code>, unless it already was.
+	 *
+	 * @return the client directory
+	 */
+	public FilePath install(FilePath root, TaskListener log) throws IOException, InterruptedException {
+
+		FilePath dir = root.child(getVersion());
+		FilePath home = subdir == null ? dir : dir.child(subdir);
+		FilePath marker = dir.child(MARKER);
+		String source = archive + (checksum == null ? "" : " " + checksum.toLowerCase(Locale.ENGLISH));
+		if (marker.exists() && source.equals(marker.readToString().trim()))
+			return home;
+
+		log.getLogger().println(Messages.OracleClientInstaller_installing(archive, dir.getRemote()));
+		root.mkdirs();
+		FilePath zip = root.child(getVersion() + ZIP);
+		if (archive.contains("://") || archive.startsWith("file:")) {
+			zip.copyFrom(new URL(archive));
+		} else {
+			FilePath local = new FilePath(new File(archive));
+			if (!local.exists())
+				throw new AbortException(Messages.OracleClientInstaller_missingArchive(archive));
+			zip.copyFrom(local);
+		}
+
+		try {
+			if (checksum != null) {
+				String actual = FileUtil.sha256(zip);
+				if (!checksum.equalsIgnoreCase(actual))
+					throw new AbortException(Messages.OracleClientInstaller_checksumMismatch(archive, actual, checksum));
+			}
+			dir.deleteRecursive();
+			zip.unzip(dir);
+		} finally {
+			zip.delete();
+		}
+		marker.write(source, UTF_8);
+		return home;
+	}
+
+	/**
+	 * @return directory name for the archive, from its checksum, or its
+	 *         location when there is none
+	 */
+	private String getVersion() {
+		String digest = checksum != null ? checksum.toLowerCase(Locale.ENGLISH) : Util.getDigestOf(archive);
+		return digest.substring(0, VERSION_LENGTH);
+	}
+
+	@Extension
+	@Symbol("oracleClientZip")
+	public static class DescriptorImpl extends ToolInstallerDescriptor<OracleClientInstaller> {
+
+		@Override
+		public String getDisplayName() {
+			return Messages.OracleClientInstaller_displayName();
+		}
+
+		@Override
+		public boolean isApplicable(Class<? extends ToolInstallation> toolType) {
+			return toolType == OracleClientInstallation.class;
+		}
+
+		public FormValidation doCheckArchive(@QueryParameter String value) {
+			if (Util.fixEmptyAndTrim(value) == null)
+				return FormValidation.error(Messages.OracleClientInstaller_missingArchive(""));
+			return FormValidation.ok();
+		}
+
+		public FormValidation doCheckChecksum(@QueryParameter String value) {
+			String checksum = Util.fixEmptyAndTrim(value);
+			if (checksum == null)
+				return FormValidation.warning(Messages.OracleClientInstaller_noChecksum());
+			if (!SHA_256.matcher(checksum).matches())
+				return FormValidation.error(Messages.OracleClientInstaller_invalidChecksum());
+			return FormValidation.ok();
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import hudson.FilePath;
+
+/**
+ * Per node cache of {@link OracleHomeResolution}, so the ORACLE_HOME tree is
+ * not scanned on every build. {@link #resolve} is shared by the build step
+ * and the Pipeline step.
+ *
+ * An entry is only valid while the modification time of ORACLE_HOME,
+ * ORACLE_HOME/bin and ORACLE_HOME/network/admin stays the same, so
+ * installing, moving or removing files there invalidates it. The entries
+ * of a node are dropped by {@link NodeCacheListener} when it goes offline.
+ */
+public class OracleHomeCache {
+
+	private static final String BIN_DIR = "bin";
+	private static final String LIB_DIR = "lib";
+	private static final String NETWORK_DIR = "network";
+	private static final String ADMIN_DIR = "admin";
+	private static final String SQLPLUS = "sqlplus";
+	private static final String SQLPLUS_FOR_WINDOWS = "sqlplus.exe";
+	private static final String TNSNAMES_ORA = "tnsnames.ora";
+	private static final String SEPARATOR = "|";
+
+	private static final ConcurrentMap<String, OracleHomeResolution> CACHE = new ConcurrentHashMap<String, OracleHomeResolution>();
+
+	public static OracleHomeResolution get(String node, String oracleHome, long lastModified) {
+
+		OracleHomeResolution resolution = CACHE.get(key(node, oracleHome));
+		if (resolution != null && resolution.getLastModified() == lastModified)
+			return resolution;
+		return null;
+	}
+
+	public static void put(String node, OracleHomeResolution resolution) {
+		CACHE.put(key(node, resolution.getOracleHome()), resolution);
+	}
+
+	public static void invalidate(String node, String oracleHome) {
+		CACHE.remove(key(node, oracleHome));
+	}
+
+	public static void invalidateNode(String node) {
+		String prefix = node + SEPARATOR;
+		for (Iterator<String> it = CACHE.keySet().iterator(); it.hasNext();) {
+			if (it.next().startsWith(prefix))
+				it.remove();
+		}
+	}
+
+	/**
+	 * Finds SQL*Plus and TNS_ADMIN under ORACLE_HOME, reusing the result of a
+	 * previous build on the same node while ORACLE_HOME is unchanged. Both
+	 * lookups run on the node, direct locations first.
+	 *
+	 * @param installation
+	 *            whether ORACLE_HOME is an {@link OracleClientInstallation},
+	 *            whose layout is known
+	 * @param assumeLayout
+	 *            whether to use <code>bin/sqlplus</code> and ORACLE_HOME as
+	 *            TNS_ADMIN when they are not found
+	 * @param timer
+	 *            gets the file searches as
+	 *            {@link PhaseTimer.Phase#FILE_SEARCH}, and the rest as
+	 *            {@link PhaseTimer.Phase#ORACLE_HOME}, in separate intervals
+	 */
+	public static OracleHomeResolution resolve(String node, FilePath oracleHome, boolean unix, boolean installation,
+			boolean assumeLayout, PhaseTimer timer) throws IOException, InterruptedException {
+
+		long resolving = timer.start();
+		long lastModified = lastModified(oracleHome);
+		OracleHomeResolution resolution = get(node, oracleHome.getRemote(), lastModified);
+		String pathSeparator = unix ? ":" : ";";
+		if (resolution == null && installation) {
+			resolution = OracleClientInstallation.resolve(oracleHome, unix, pathSeparator);
+			put(node, resolution);
+		}
+		timer.stop(PhaseTimer.Phase.ORACLE_HOME, resolving);
+		if (resolution != null)
+			return resolution;
+
+		String sqlplus = unix ? SQLPLUS : SQLPLUS_FOR_WINDOWS;
+		FilePath sqlplusPath = findFile(sqlplus, oracleHome.child(BIN_DIR), 1, timer);
+		if (sqlplusPath == null)
+			sqlplusPath = findFile(sqlplus, oracleHome, FileLocator.DEFAULT_MAX_DEPTH, timer);
+		if (sqlplusPath == null && assumeLayout)
+			sqlplusPath = oracleHome.child(BIN_DIR).child(sqlplus);
+
+		FilePath tnsnames = findFile(TNSNAMES_ORA, oracleHome.child(NETWORK_DIR).child(ADMIN_DIR), 1, timer);
+		if (tnsnames == null)
+			tnsnames = findFile(TNSNAMES_ORA, oracleHome, FileLocator.DEFAULT_MAX_DEPTH, timer);
+		FilePath tnsAdmin = tnsnames == null ? null : tnsnames.getParent();
+		if (tnsAdmin == null && assumeLayout)
+			tnsAdmin = oracleHome;
+
+		resolving = timer.start();
+		String libraryPath = oracleHome.child(LIB_DIR).getRemote() + pathSeparator + oracleHome.getRemote();
+		resolution = new OracleHomeResolution(oracleHome.getRemote(),
+				sqlplusPath == null ? null : sqlplusPath.getRemote(), tnsAdmin == null ? null : tnsAdmin.getRemote(),
+				libraryPath, lastModified);
+		put(node, resolution);
+		timer.stop(PhaseTimer.Phase.ORACLE_HOME, resolving);
+		return resolution;
+	}
+
+	/**
+	 * {@link FileUtil#findFile(String, FilePath, int)}, timed as a
+	 * {@link PhaseTimer.Phase#FILE_SEARCH}.
+	 */
+	private static FilePath findFile(String name, FilePath directory, int maxDepth, PhaseTimer timer)
+			throws IOException, InterruptedException {
+
+		long searching = timer.start();
+		try {
+			return FileUtil.findFile(name, directory, maxDepth);
+		} finally {
+			timer.stop(PhaseTimer.Phase.FILE_SEARCH, searching);
+		}
+	}
+
+	/**
+	 * Newest modification time of the directories a resolution depends on.
+	 * Directories that do not exist count as 0.
+	 */
+	public static long lastModified(FilePath oracleHome) throws IOException, InterruptedException {
+
+		long lastModified = oracleHome.lastModified();
+		lastModified = Math.max(lastModified, oracleHome.child(BIN_DIR).lastModified());
+		lastModified = Math.max(lastModified, oracleHome.child(NETWORK_DIR).child(ADMIN_DIR).lastModified());
+		return lastModified;
+	}
+
+	private static String key(String node, String oracleHome) {
+		return node + SEPARATOR + oracleHome;
+	}
+
+}
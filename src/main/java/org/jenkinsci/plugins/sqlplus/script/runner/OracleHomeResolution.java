@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.Serializable;
+
+/**
+ * SQL*Plus executable, TNS_ADMIN and library path found under an ORACLE_HOME
+ * of a node.
+ */
+public class OracleHomeResolution implements Serializable {
+
+	private static final long serialVersionUID = 4305582093914862731L;
+
+	private final String oracleHome;
+
+	private final String sqlplus;
+
+	private final String tnsAdmin;
+
+	private final String libraryPath;
+
+	private final long lastModified;
+
+	public OracleHomeResolution(String oracleHome, String sqlplus, String tnsAdmin, String libraryPath,
+			long lastModified) {
+		this.oracleHome = oracleHome;
+		this.sqlplus = sqlplus;
+		this.tnsAdmin = tnsAdmin;
+		this.libraryPath = libraryPath;
+		this.lastModified = lastModified;
+	}
+
+	public String getOracleHome() {
+		return oracleHome;
+	}
+
+	/**
+	 * @return SQL*Plus executable, or <code>null</code> if it was not found
+	 */
+	public String getSqlplus() {
+		return sqlplus;
+	}
+
+	/**
+	 * @return directory with TNSNAMES.ORA, or <code>null</code> if it was not
+	 *         found
+	 */
+	public String getTnsAdmin() {
+		return tnsAdmin;
+	}
+
+	public String getLibraryPath() {
+		return libraryPath;
+	}
+
+	/**
+	 * @return newest modification time of the ORACLE_HOME directories used
+	 *         when this resolution was made
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+}
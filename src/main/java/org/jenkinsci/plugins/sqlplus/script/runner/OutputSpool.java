@@ -0,0 +1,164 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import hudson.FilePath;
+
+/**
+ * Writes the whole SQL*Plus output to a gzip file, and only its first
+ * lines, its error lines and its last lines to the console.
+ *
+ * With {@link #launch}, SQL*Plus is started on the node of the file and its
+ * output never leaves it, so the build log and the remoting traffic do not
+ * grow with the output of the script.
+ */
+public class OutputSpool extends NodeOutput {
+
+	public static final int HEAD_LINES = Integer.getInteger(OutputSpool.class.getName() + ".headLines", 100);
+	public static final int TAIL_LINES = Integer.getInteger(OutputSpool.class.getName() + ".tailLines", 100);
+	public static final int ERROR_LINES = Integer.getInteger(OutputSpool.class.getName() + ".errorLines", 100);
+
+	private final OutputStream spool;
+
+	private final PrintStream console;
+
+	private final int head;
+
+	private final int tail;
+
+	private final int maxErrors;
+
+	/** last lines not shown yet */
+	private final Deque<byte[]> last = new ArrayDeque<byte[]>();
+
+	private long lines;
+
+	private long bytes;
+
+	private int errors;
+
+	private String file;
+
+	public OutputSpool(OutputStream spool, PrintStream console, int head, int tail, int maxErrors) {
+		this.spool = spool;
+		this.console = console;
+		this.head = head;
+		this.tail = tail;
+		this.maxErrors = maxErrors;
+	}
+
+	@Override
+	protected void eol(byte[] b, int len) throws IOException {
+
+		spool.write(b, 0, len);
+		bytes += len;
+		lines++;
+
+		if (lines <= head) {
+			console.write(b, 0, len);
+			return;
+		}
+		if (lines == head + 1)
+			console.println(Messages.OutputSpool_headShown(head));
+
+		if (errors < maxErrors
+				&& SQLPlusOutputFilter.isError(trimEOL(new String(b, 0, len, StandardCharsets.UTF_8)))) {
+			errors++;
+			console.print(lines + ": ");
+			console.write(b, 0, len);
+			// shown already, so the tail starts after it
+			last.clear();
+			return;
+		}
+
+		if (tail > 0) {
+			byte[] line = new byte[len];
+			System.arraycopy(b, 0, line, 0, len);
+			last.addLast(line);
+			if (last.size() > tail)
+				last.removeFirst();
+		}
+	}
+
+	@Override
+	public long getLines() {
+		return lines;
+	}
+
+	@Override
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public List<String> getFiles() {
+		return file == null ? Collections.<String>emptyList() : Collections.singletonList(file);
+	}
+
+	/**
+	 * Writes the last partial line, closes the spool and shows the last
+	 * lines; the console stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		forceEol();
+		spool.close();
+		if (!last.isEmpty()) {
+			console.println(Messages.OutputSpool_tailShown(last.size()));
+			byte[] line = null;
+			for (byte[] l : last) {
+				line = l;
+				console.write(line, 0, line.length);
+			}
+			// the last line may have no end of line
+			if (line.length == 0 || line[line.length - 1] != '\n')
+				console.println();
+			last.clear();
+		}
+		console.flush();
+	}
+
+	/**
+	 * Runs SQL*Plus on the node of <code>spool</code>, writing its output
+	 * there.
+	 *
+	 * @param input
+	 *            script for the standard input of SQL*Plus, or
+	 *            <code>null</code>
+	 * @param exits
+	 *            whether the script ends with the exit command
+	 * @param timeout
+	 *            milliseconds SQL*Plus may run, or 0 for no limit
+	 */
+	public static NodeOutput.Summary launch(FilePath spool, List<String> cmds, String input, boolean exits,
+			Map<String, String> env, long timeout, boolean failFast, PrintStream log)
+			throws IOException, InterruptedException {
+		return NodeOutput.launch(spool, new SpoolFactory(), cmds, input, exits, env, timeout, failFast, log);
+	}
+
+	private static class SpoolFactory implements NodeOutput.Factory {
+
+		private static final long serialVersionUID = -4490235571083640317L;
+
+		@Override
+		public NodeOutput open(File file, PrintStream console) throws IOException {
+			OutputSpool spool = new OutputSpool(new GZIPOutputStream(new FileOutputStream(file)), console,
+					HEAD_LINES, TAIL_LINES, ERROR_LINES);
+			spool.file = file.getAbsolutePath();
+			return spool;
+		}
+	}
+
+}
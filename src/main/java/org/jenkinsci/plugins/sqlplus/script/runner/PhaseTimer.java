@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Util;
+
+/**
+ * Time spent by one SQL*Plus Script Runner step in each of its phases,
+ * measured with {@link System#nanoTime()}.
+ *
+ * Phases run by concurrent sessions, like launch and execution of a script
+ * list, add up the time of every session, so they can exceed the total.
+ */
+public class PhaseTimer implements Serializable {
+
+	private static final long serialVersionUID = 4687047398431512370L;
+
+	public enum Phase {
+		CREDENTIALS, ORACLE_HOME, FILE_SEARCH, VERSION, PREPARATION, LAUNCH, EXECUTION, CLEANUP;
+
+		public String getDisplayName() {
+			switch (this) {
+			case CREDENTIALS:
+				return Messages.PhaseTimer_credentials();
+			case ORACLE_HOME:
+				return Messages.PhaseTimer_oracleHome();
+			case FILE_SEARCH:
+				return Messages.PhaseTimer_fileSearch();
+			case VERSION:
+				return Messages.PhaseTimer_version();
+			case PREPARATION:
+				return Messages.PhaseTimer_preparation();
+			case LAUNCH:
+				return Messages.PhaseTimer_launch();
+			case EXECUTION:
+				return Messages.PhaseTimer_execution();
+			default:
+				return Messages.PhaseTimer_cleanup();
+			}
+		}
+	}
+
+	private final Map<Phase, Long> nanos = new EnumMap<Phase, Long>(Phase.class);
+
+	private final transient long created = System.nanoTime();
+
+	private long total;
+
+	private String step;
+
+	/**
+	 * @return start time, for {@link #stop(Phase, long)}
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Adds the time since <code>start</code> to a phase.
+	 */
+	public void stop(Phase phase, long start) {
+		add(phase, System.nanoTime() - start);
+	}
+
+	public synchronized void add(Phase phase, long duration) {
+		Long current = nanos.get(phase);
+		nanos.put(phase, current == null ? duration : current + duration);
+	}
+
+	/**
+	 * @return time of a phase in milliseconds
+	 */
+	public synchronized long getDuration(Phase phase) {
+		Long duration = nanos.get(phase);
+		return duration == null ? 0 : TimeUnit.NANOSECONDS.toMillis(duration);
+	}
+
+	/**
+	 * @return the phases that took any time, in the order they run
+	 */
+	public synchronized List<Phase> getPhases() {
+		return new ArrayList<Phase>(nanos.keySet());
+	}
+
+	/**
+	 * Ends the step, which started when the timer was created.
+	 *
+	 * @param step
+	 *            what the step ran, to tell steps of a build apart
+	 */
+	public synchronized void finish(String step) {
+		this.total = System.nanoTime() - created;
+		this.step = step;
+	}
+
+	/**
+	 * @return time of the whole step in milliseconds
+	 */
+	public synchronized long getTotal() {
+		return TimeUnit.NANOSECONDS.toMillis(total);
+	}
+
+	public String getTotalString() {
+		return Util.getTimeSpanString(getTotal());
+	}
+
+	public String getDurationString(Phase phase) {
+		return Util.getTimeSpanString(getDuration(phase));
+	}
+
+	/**
+	 * @return what the step ran
+	 */
+	public String getStep() {
+		return step;
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Phase breakdown of every SQL*Plus Script Runner step of a build, telling
+ * the plugin overhead apart from the time spent in SQL*Plus.
+ */
+public class PhaseTimingAction implements RunAction2 {
+
+	private static final String ICON = "clock.png";
+
+	private static final String URL_NAME = "sqlplus-phases";
+
+	private final List<PhaseTimer> steps = new ArrayList<PhaseTimer>();
+
+	private transient Run<?, ?> run;
+
+	/**
+	 * Adds a step to the action of the build, creating it on first use.
+	 */
+	public static void add(Run<?, ?> build, PhaseTimer timer) {
+
+		synchronized (build) {
+			PhaseTimingAction action = build.getAction(PhaseTimingAction.class);
+			if (action == null) {
+				action = new PhaseTimingAction();
+				build.addAction(action);
+			}
+			synchronized (action.steps) {
+				action.steps.add(timer);
+			}
+		}
+	}
+
+	public List<PhaseTimer> getSteps() {
+		synchronized (steps) {
+			return Collections.unmodifiableList(new ArrayList<PhaseTimer>(steps));
+		}
+	}
+
+	public Run<?, ?> getRun() {
+		return run;
+	}
+
+	@Override
+	public void onAttached(Run<?, ?> r) {
+		this.run = r;
+	}
+
+	@Override
+	public void onLoad(Run<?, ?> r) {
+		this.run = r;
+	}
+
+	@Override
+	public String getIconFileName() {
+		return ICON;
+	}
+
+	@Override
+	public String getDisplayName() {
+		return Messages.PhaseTimingAction_displayName();
+	}
+
+	@Override
+	public String getUrlName() {
+		return URL_NAME;
+	}
+
+}
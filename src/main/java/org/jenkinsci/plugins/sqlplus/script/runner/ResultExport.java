@@ -0,0 +1,247 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the rows a query prints with <code>SET MARKUP CSV ON</code> to CSV
+ * files, starting a new one when a file reaches the chunk size, each with
+ * the column headings first. Files can be gzipped.
+ *
+ * Blank lines and the headings repeated on each page are left out, and
+ * error lines are shown on the console instead. Once the headings came, only
+ * lines starting with an error code are errors, so rows holding one stay in
+ * the file. Quoted values may span lines: rows are counted, and files split,
+ * where a record starts.
+ */
+public class ResultExport extends NodeOutput {
+
+	private static final String NEW_LINE = "\n";
+	private static final String GZIP_EXTENSION = ".gz";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Pattern ERROR_LINE = Pattern.compile("^((ORA|SP2|PLS)-\\d{4,5}:|ERROR( at line \\d+)?:$)");
+
+	private final File file;
+
+	private final long chunkSize;
+
+	private final boolean gzip;
+
+	private final PrintStream console;
+
+	private final List<String> files = new ArrayList<String>();
+
+	private OutputStream chunk;
+
+	private long chunkBytes;
+
+	private byte[] headings;
+
+	private long rows;
+
+	private boolean quoted;
+
+	private long bytes;
+
+	/**
+	 * @param file
+	 *            CSV file, named with a part number when the export is split
+	 * @param chunkSize
+	 *            bytes after which a new file is started, or 0 for one file
+	 */
+	public ResultExport(File file, long chunkSize, boolean gzip, PrintStream console) {
+		this.file = file;
+		this.chunkSize = chunkSize;
+		this.gzip = gzip;
+		this.console = console;
+	}
+
+	/**
+	 * Script running another with CSV output and no other SQL*Plus message,
+	 * stopping on the first SQL error so an extract is not partial without
+	 * failing.
+	 */
+	public static String getScript(String script) {
+		return wrap("@\"" + script + '"');
+	}
+
+	/**
+	 * {@link #getScript(String)} with the lines of a script held in memory
+	 * instead of a call to its file.
+	 */
+	public static String getInlineScript(String content) {
+		return wrap(content);
+	}
+
+	private static String wrap(String commands) {
+
+		StringBuilder content = new StringBuilder();
+		content.append("WHENEVER SQLERROR EXIT FAILURE").append(NEW_LINE);
+		content.append("SET MARKUP CSV ON QUOTE ON").append(NEW_LINE);
+		content.append("SET FEEDBACK OFF ECHO OFF VERIFY OFF TERMOUT ON HEADING ON PAGESIZE 50000 TRIMOUT ON")
+				.append(NEW_LINE);
+		content.append(commands).append(NEW_LINE);
+		content.append("EXIT").append(NEW_LINE);
+		return content.toString();
+	}
+
+	/**
+	 * @return file name with <code>suffix</code> before its extension
+	 */
+	public static String insertSuffix(String name, String suffix) {
+
+		int dot = name.lastIndexOf('.');
+		int separator = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+		if (dot <= separator + 1)
+			return name + suffix;
+		return name.substring(0, dot) + suffix + name.substring(dot);
+	}
+
+	/**
+	 * @return name of a part, counted from 1
+	 */
+	public static String getChunkName(String name, int part, boolean split, boolean gzip) {
+		return insertSuffix(name, split ? String.format("-%03d", part) : "") + (gzip ? GZIP_EXTENSION : "");
+	}
+
+	@Override
+	protected void eol(byte[] b, int len) throws IOException {
+
+		if (quoted) {
+			// the rest of a quoted value, in the record already written
+			quoted = isQuoteOpen(b, len, true);
+			write(b, len);
+			return;
+		}
+
+		String line = trimEOL(new String(b, 0, len, StandardCharsets.UTF_8));
+		if (line.trim().length() == 0)
+			return;
+		if (ERROR_LINE.matcher(line).find() || headings == null && SQLPlusOutputFilter.isError(line)) {
+			console.println(line);
+			return;
+		}
+
+		if (headings == null) {
+			headings = Arrays.copyOf(b, len);
+			open();
+			write(b, len);
+			return;
+		}
+		if (len == headings.length && Arrays.equals(headings, Arrays.copyOf(b, len)))
+			return;
+
+		if (chunkSize > 0 && chunkBytes > headings.length && chunkBytes + len > chunkSize) {
+			chunk.close();
+			open();
+			write(headings, headings.length);
+		}
+		quoted = isQuoteOpen(b, len, false);
+		write(b, len);
+		rows++;
+	}
+
+	/**
+	 * @return whether a quoted value is still open at the end of the line,
+	 *         doubled quotes inside values counting twice
+	 */
+	private static boolean isQuoteOpen(byte[] b, int len, boolean open) {
+
+		for (int i = 0; i < len; i++) {
+			if (b[i] == '"')
+				open = !open;
+		}
+		return open;
+	}
+
+	/**
+	 * @return whether the headings were written, the lines after them being
+	 *         data not to check for errors
+	 */
+	@Override
+	public boolean isData() {
+		return headings != null;
+	}
+
+	private void open() throws IOException {
+
+		File part = new File(file.getParentFile(),
+				getChunkName(file.getName(), files.size() + 1, chunkSize > 0, gzip));
+		OutputStream out = new FileOutputStream(part);
+		if (gzip)
+			out = new GZIPOutputStream(out, BUFFER_SIZE);
+		chunk = new BufferedOutputStream(out, BUFFER_SIZE);
+		chunkBytes = 0;
+		files.add(part.getAbsolutePath());
+	}
+
+	private void write(byte[] b, int len) throws IOException {
+		chunk.write(b, 0, len);
+		chunkBytes += len;
+		bytes += len;
+	}
+
+	/**
+	 * @return rows written, without the headings
+	 */
+	@Override
+	public long getLines() {
+		return rows;
+	}
+
+	@Override
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public List<String> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * Writes the last partial line and closes the current file; the console
+	 * stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		forceEol();
+		if (chunk != null) {
+			chunk.close();
+			chunk = null;
+		}
+		console.flush();
+	}
+
+	public static class ExportFactory implements NodeOutput.Factory {
+
+		private static final long serialVersionUID = 6003417252318843016L;
+
+		private final long chunkSize;
+
+		private final boolean gzip;
+
+		public ExportFactory(long chunkSize, boolean gzip) {
+			this.chunkSize = chunkSize;
+			this.gzip = gzip;
+		}
+
+		@Override
+		public NodeOutput open(File file, PrintStream console) {
+			return new ResultExport(file, chunkSize, gzip, console);
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import hudson.Proc;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.Computer;
+
+/**
+ * Copies the SQL*Plus output as it is, recording the <code>ORA-</code>,
+ * <code>SP2-</code> and <code>PLS-</code> errors found in it with their
+ * output line numbers.
+ *
+ * In fail fast mode the process is killed on the first error, instead of
+ * waiting for the script to end.
+ */
+public class SQLPlusOutputFilter extends LineTransformationOutputStream {
+
+	private static final Pattern ERROR = Pattern.compile("\\b(ORA|SP2|PLS)-\\d{4,5}\\b.*");
+
+	private static final int MAX_ERRORS = Integer.getInteger(SQLPlusOutputFilter.class.getName() + ".maxErrors",
+			100);
+
+	private final OutputStream out;
+
+	private final boolean failFast;
+
+	private final List<String> errors = new ArrayList<String>();
+
+	private int lines;
+
+	private int errorCount;
+
+	private volatile Proc proc;
+
+	private volatile boolean killed;
+
+	public SQLPlusOutputFilter(OutputStream out, boolean failFast) {
+		this.out = out;
+		this.failFast = failFast;
+	}
+
+	/**
+	 * @return whether an output line has an error
+	 */
+	public static boolean isError(String line) {
+		return ERROR.matcher(line).find();
+	}
+
+	/**
+	 * @return whether the line just written is checked for errors, which all
+	 *         lines are unless a subclass says otherwise
+	 */
+	protected boolean isChecked() {
+		return true;
+	}
+
+	/**
+	 * Gives the process to kill in fail fast mode, killing it right away if an
+	 * error came first.
+	 */
+	public void attach(Proc proc) {
+		this.proc = proc;
+		if (killed)
+			kill(proc);
+	}
+
+	@Override
+	protected void eol(byte[] b, int len) throws IOException {
+
+		out.write(b, 0, len);
+		lines++;
+		if (!isChecked())
+			return;
+
+		Matcher matcher = ERROR.matcher(trimEOL(new String(b, 0, len, StandardCharsets.UTF_8)));
+		if (!matcher.find())
+			return;
+
+		errorCount++;
+		if (errors.size() < MAX_ERRORS)
+			errors.add(Messages.SQLPlusOutputFilter_error(lines, matcher.group()));
+
+		if (failFast && !killed) {
+			killed = true;
+			Proc current = proc;
+			if (current != null)
+				kill(current);
+		}
+	}
+
+	/**
+	 * Kills the process away from the thread writing its output, which may be
+	 * the one the remoting channel needs to do it.
+	 */
+	private void kill(final Proc proc) {
+		Computer.threadPoolForRemoting.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					proc.kill();
+				} catch (IOException e) {
+					// the process is gone
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return the first errors, up to <code>maxErrors</code>
+	 */
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return whether the process was killed on an error
+	 */
+	public boolean isKilled() {
+		return killed;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes the last partial line; the wrapped stream stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+		forceEol();
+		out.flush();
+	}
+
+}
@@ -1,18 +1,49 @@
 package org.jenkinsci.plugins.sqlplus.script.runner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Launcher.ProcStarter;
+import hudson.Proc;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.remoting.LocalChannel;
 import hudson.remoting.VirtualChannel;
 import hudson.util.ArgumentListBuilder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
 /**
  * Run SQLPlus commands on the slave, or master of Jenkins.
@@ -22,12 +53,6 @@ public class SQLPlusRunner implements Serializable {
 
 	private static final long serialVersionUID = -310945626014565712L;
 
-	private static final String WINDOWS_OS = "win";
-
-	private static final String OPERATION_SYSTEM = "os.name";
-
-	private static final String MSG_TEMP_SCRIPT = Messages.SQLPlusRunner_tempScript();
-
 	private static final String ON = Messages.SQLPlusRunner_on();
 
 	private static final String MSG_ORACLE_HOME = Messages.SQLPlusRunner_usingOracleHome();
@@ -66,33 +91,44 @@ public class SQLPlusRunner implements Serializable {
 
 	private static final String DEBUG_MSG = "[DEBUG] ";
 
+	private static final String SPOOL_DIR = "sqlplus-output";
+
+	/** name of a user defined script in the log and the results */
+	private static final String INLINE_SCRIPT = "user-defined.sql";
+
 	private static final String HIDDEN_PASSWORD = "********";
 
 	private static final String LINE = Messages.SQLPlusRunner_line();
 
 	// For executing commands
-	private static final String LIB_DIR = "lib";
-	private static final String BIN_DIR = "bin";
-	private static final String NET_DIR = "network" + File.separator + "admin";
-
-	private static final String ENV_LD_LIBRARY_PATH = "LD_LIBRARY_PATH";
 	private static final String ENV_ORACLE_HOME = "ORACLE_HOME";
-	private static final String ENV_TNS_ADMIN = "TNS_ADMIN";
 
 	private static final String SQLPLUS_TRY_LOGIN_JUST_ONCE = "-L";
+	private static final String SQLPLUS_SILENT = "-S";
 	private static final String SQLPLUS_VERSION = "-v";
-	private static final String SQLPLUS = "sqlplus";
-	private static final String SQLPLUS_FOR_WINDOWS = "sqlplus.exe";
-
-	private static final String TNSNAMES_ORA = "tnsnames.ora";
 
 	private static final int PROCESS_EXIT_CODE_SUCCESSFUL = 0;
 
-	public SQLPlusRunner(Run<?, ?> build, TaskListener listener, Launcher launcher,
+	private static final String SUMMARY_FORMAT = " %-9s %5d %12s   %s";
+
+	private static final String PHASE_FORMAT = " %-26s %12s";
+
+	private static final String UTF_8 = "UTF-8";
+
+	private static final String LIST_SEPARATOR = "[,\\r\\n]+";
+
+	private static final String COMMENT = "#";
+
+	private static final int EXCERPT_LINES = 20;
+
+	private static final String SESSIONS_DIR = "sqlplus-sessions";
+
+	public SQLPlusRunner(Run<?, ?> build, FilePath workspace, TaskListener listener, Launcher launcher,
 			boolean isHideSQLPlusVersion, String user, String password, String instance, String script,
 			String globalOracleHome, String globalSQLPlusHome,String globalTNSAdmin,String scriptType, String customOracleHome, String customSQLPlusHome,
-			String customTNSAdmin, boolean tryToDetectOracleHome, boolean debug) {
+			String customTNSAdmin, boolean tryToDetectOracleHome, boolean debug, int maxSessions, int maxInstances) {
 		this.build = build;
+		this.workspace = workspace;
 		this.listener = listener;
 		this.launcher = launcher;
 		this.isHideSQLPlusVersion = isHideSQLPlusVersion;
@@ -109,10 +145,14 @@ public class SQLPlusRunner implements Serializable {
 		this.customTNSAdmin = customTNSAdmin;
 		this.tryToDetectOracleHome = tryToDetectOracleHome;
 		this.debug = debug;
+		this.maxSessions = maxSessions;
+		this.maxInstances = maxInstances;
 	}
 
 	private final Run<?, ?> build;
 
+	private final FilePath workspace;
+
 	private final TaskListener listener;
 
 	private final Launcher launcher;
@@ -145,8 +185,169 @@ public class SQLPlusRunner implements Serializable {
 
 	private final boolean debug;
 
+	private final int maxSessions;
+
+	private final int maxInstances;
+
+	private boolean usePooledSession;
+
+	private boolean runAsBatch;
+
+	private boolean failFast;
+
+	private boolean collectTiming;
+
+	private boolean skipApplied;
+
+	private boolean spoolOutput;
+
+	/** numbers the output files of the build */
+	private final AtomicInteger spools = new AtomicInteger();
+
+	/** whether each prepared script ends with the exit command, by path */
+	private final Map<String, Boolean> exitFound = new ConcurrentHashMap<String, Boolean>();
+
+	private String exportFile;
+
+	private long exportChunkSize;
+
+	private boolean exportGzip;
+
+	/** whether export files are named after the instance or the script */
+	private boolean exportByInstance;
+
+	private boolean exportByScript;
+
+	/** prepared user defined script, fed to SQL*Plus on its standard input */
+	private String inlineScript;
+
+	private String oracleClientHome;
+
+	private LaunchProfile profile;
+
+	private transient EnvVars launchEnvironment;
+
+	private int timeout;
+
+	/** {@link System#currentTimeMillis()} of the timeout, or 0 */
+	private long deadline;
+
+	/** set when a script was killed on an error or timed out, so no other one starts */
+	private volatile boolean stopped;
+
+	private PhaseTimer timer = new PhaseTimer();
+
+	/**
+	 * Runs the scripts on pooled {@link SQLPlusSession}s, without appending
+	 * the exit command.
+	 */
+	public void setUsePooledSession(boolean usePooledSession) {
+		this.usePooledSession = usePooledSession;
+	}
+
+	/**
+	 * Runs a script list in one SQL*Plus session per instance, through a
+	 * {@link BatchScript}.
+	 */
+	public void setRunAsBatch(boolean runAsBatch) {
+		this.runAsBatch = runAsBatch;
+	}
+
+	/**
+	 * Kills SQL*Plus on the first <code>ORA-</code>, <code>SP2-</code> or
+	 * <code>PLS-</code> error of its output, and starts no more scripts.
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * Runs an instrumented copy of each script, publishing the time of each
+	 * statement in a {@link StatementTimingAction}.
+	 */
+	public void setCollectTiming(boolean collectTiming) {
+		this.collectTiming = collectTiming;
+	}
+
+	/**
+	 * Writes the whole output of each SQL*Plus run to a gzip file in the
+	 * workspace, through an {@link OutputSpool}, and shows only part of it.
+	 */
+	public void setSpoolOutput(boolean spoolOutput) {
+		this.spoolOutput = spoolOutput;
+	}
+
+	/**
+	 * Runs each script as a query with CSV output, written by a
+	 * {@link ResultExport} on the node.
+	 *
+	 * @param file
+	 *            CSV file in the workspace, or <code>null</code> for no export
+	 * @param chunkSize
+	 *            bytes after which a new file is started, or 0 for one file
+	 */
+	public void setExport(String file, long chunkSize, boolean gzip) {
+		this.exportFile = file == null || file.trim().length() < 1 ? null : file.trim();
+		this.exportChunkSize = chunkSize;
+		this.exportGzip = gzip;
+	}
+
+	/**
+	 * Uses the home of an {@link OracleClientInstallation}, already installed
+	 * on the node, unless there is a custom ORACLE_HOME.
+	 */
+	public void setOracleClient(String oracleClientHome) {
+		this.oracleClientHome = oracleClientHome;
+	}
+
+	/**
+	 * Skips the scripts that already ran successfully with the same content
+	 * on the same instance and user, as recorded in the {@link ScriptLedger}.
+	 */
+	public void setSkipApplied(boolean skipApplied) {
+		this.skipApplied = skipApplied;
+	}
+
+	/**
+	 * Stops SQL*Plus when the step runs for longer than <code>timeout</code>
+	 * minutes, through a {@link SQLPlusWatchdog}. Scripts not started by then
+	 * are not run.
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Timer of the step, which may hold phases timed before the runner.
+	 */
+	public void setPhaseTimer(PhaseTimer timer) {
+		this.timer = timer;
+	}
+
+	/**
+	 * Runs the step, saves the {@link ScriptLedger} once for all its scripts,
+	 * then publishes and prints how long each phase took.
+	 */
 	public void run() throws IOException, InterruptedException {
 
+		if (timeout > 0)
+			deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeout);
+		try {
+			execute();
+		} finally {
+			if (skipApplied) {
+				long saving = timer.start();
+				ScriptLedger.get().save();
+				timer.stop(PhaseTimer.Phase.CLEANUP, saving);
+			}
+			timer.finish(script);
+			PhaseTimingAction.add(build, timer);
+			printPhases();
+		}
+	}
+
+	private void execute() throws IOException, InterruptedException {
+
 		String selectedOracleHome = null;
 		String detectedOracleHome = System.getenv(ENV_ORACLE_HOME);
 
@@ -166,17 +367,14 @@ public class SQLPlusRunner implements Serializable {
 		}
 
 		// custom TNS_ADMIN
-		boolean hasCustomTNSAdmin = false;
 		if (customTNSAdmin != null && customTNSAdmin.length() > 0) {
 			listener.getLogger().println(MSG_CUSTOM_TNS_ADMIN);
 			listener.getLogger().println("TNS_ADMIN >>> " + customTNSAdmin);
-			hasCustomTNSAdmin = true;
 		}else if (globalTNSAdmin != null && globalTNSAdmin.length() > 0) {
 			if (debug)
 				listener.getLogger().println(DEBUG_MSG + MSG_GLOBAL_TNS_ADMIN_SELECTED);
 			listener.getLogger().println(LINE);
 			listener.getLogger().println(MSG_GLOBAL_TNS_ADMIN);
-			hasCustomTNSAdmin = true;
 			customTNSAdmin = globalTNSAdmin;
 		}
 
@@ -187,6 +385,11 @@ public class SQLPlusRunner implements Serializable {
 			listener.getLogger().println(LINE);
 			listener.getLogger().println(MSG_CUSTOM_ORACLE_HOME);
 			selectedOracleHome = customOracleHome;
+			// then the Oracle client tool of the job
+		} else if (oracleClientHome != null && oracleClientHome.length() > 0) {
+			listener.getLogger().println(LINE);
+			listener.getLogger().println(Messages.SQLPlusRunner_usingOracleClient());
+			selectedOracleHome = oracleClientHome;
 			// global ORACLE_HOME comes next
 		} else if (globalOracleHome != null && globalOracleHome.length() > 0) {
 			if (debug)
@@ -208,10 +411,6 @@ public class SQLPlusRunner implements Serializable {
 			selectedOracleHome = globalOracleHome;
 		}
 
-		if (!isHideSQLPlusVersion) {
-			runGetSQLPLusVersion(customSQLPlusHome, selectedOracleHome, listener, launcher);
-		}
-
 		if (debug)
 			listener.getLogger().println(" detected host = " + NetUtil.getHostName());
 
@@ -236,27 +435,62 @@ public class SQLPlusRunner implements Serializable {
 
 		}
 
+		// timed by the cache, apart from its file searches
+		OracleHomeResolution resolution = resolveOracleHome(selectedOracleHome, slaveMachine);
+		long resolving = timer.start();
+		profile = LaunchProfile.get(getNodeName(), resolution, customSQLPlusHome, customTNSAdmin, pathSeparator());
+		timer.stop(PhaseTimer.Phase.ORACLE_HOME, resolving);
+		listener.getLogger().println("SQL*Plus exec file = " + profile.getExecutable());
+		if (debug)
+			listener.getLogger().println(DEBUG_MSG + "launch profile " + profile);
+
+		if (!isHideSQLPlusVersion) {
+			long probing = timer.start();
+			runGetSQLPLusVersion(customSQLPlusHome, resolution, listener, launcher);
+			timer.stop(PhaseTimer.Phase.VERSION, probing);
+		}
+
 		if (script == null || script.length() < 1) {
 			throw new RuntimeException(Messages.SQLPlusRunner_missingScript(build.getRootDir()));
 		}
 
+		listener.getLogger().println(LINE);
+		listener.getLogger().println(MSG_ORACLE_HOME + selectedOracleHome);
+		listener.getLogger().println(LINE);
+
+		List<String> instances = findInstances();
+		validateInstances(instances);
+
 		String instanceStr = LOCAL_DATABASE_MSG;
 		if (instance != null) {
 			instanceStr = instance;
 		}
 
-		listener.getLogger().println(LINE);
-		listener.getLogger().println(MSG_ORACLE_HOME + selectedOracleHome);
-		listener.getLogger().println(LINE);
-
-		FilePath tempScript = null;
-		FilePath scriptFilePath = null;
-		if (ScriptType.userDefined.name().equals(scriptType)) {
+		List<FilePath> scripts = new ArrayList<FilePath>();
+		Migrations migrations = null;
+		if (ScriptType.migrations.name().equals(scriptType)) {
+			long scanning = timer.start();
+			migrations = Migrations.scan(workspace.child(script));
+			timer.stop(PhaseTimer.Phase.FILE_SEARCH, scanning);
+			listener.getLogger().println(Messages.SQLPlusRunner_migrationsFound(migrations.getMigrations().size(),
+					script, migrations.getHashed()));
+		} else if (ScriptType.fileList.name().equals(scriptType)) {
+			long finding = timer.start();
+			scripts = findScripts();
+			timer.stop(PhaseTimer.Phase.PREPARATION, finding);
+			if (scripts.isEmpty()) {
+				throw new RuntimeException(Messages.SQLPlusRunner_missingScript(script));
+			}
+		} else if (ScriptType.userDefined.name().equals(scriptType)) {
 			listener.getLogger().println(MSG_DEFINED_SCRIPT + " " + user + SLASH + HIDDEN_PASSWORD + AT + instanceStr);
-			scriptFilePath = FileUtil.createTempScript(build, script);
-			tempScript = scriptFilePath;
-			listener.getLogger().println(MSG_TEMP_SCRIPT + " " + scriptFilePath.absolutize().toURI());
+			long preparing = timer.start();
+			inlineScript = FileUtil.prepareScript(script, !usePooledSession);
+			timer.stop(PhaseTimer.Phase.PREPARATION, preparing);
+			listener.getLogger().println(Messages.SQLPlusRunner_inlineScript(inlineScript.length()));
+			// only names the script, which has no file
+			scripts.add(new FilePath(new File(INLINE_SCRIPT)));
 		} else {
+			FilePath scriptFilePath = null;
 			if (build.getRootDir() != null) {
 				String strScript = build.getRootDir() + File.separator + script;
 				if (strScript != null)
@@ -272,235 +506,982 @@ public class SQLPlusRunner implements Serializable {
 				throw new RuntimeException(
 						Messages.SQLPlusRunner_missingScript(scriptFilePath.getRemote() + File.separator + script));
 			}
-			if (scriptFilePath != null && !FileUtil.hasExitCode(scriptFilePath))
-				FileUtil.addExitInTheEnd(scriptFilePath);
+			if (scriptFilePath != null && scriptFilePath.exists())
+				prepareScript(scriptFilePath);
+			scripts.add(scriptFilePath);
 		}
 
 		listener.getLogger().println(LINE);
 
+		exportByInstance = instances.size() > 1;
+		exportByScript = scripts.size() > 1;
+
 		int exitCode = 0;
 		try {
-			// and the extra ones for the plugin
-			EnvVars envVars = new EnvVars();
-			envVars.put(ENV_ORACLE_HOME, selectedOracleHome);
-			if (debug)
-				listener.getLogger().println(DEBUG_MSG + "ORACLE_HOME = " + selectedOracleHome);
-			envVars.put(ENV_LD_LIBRARY_PATH,
-					selectedOracleHome + File.separator + LIB_DIR + File.pathSeparator + selectedOracleHome);
-			if (debug)
-				listener.getLogger().println(DEBUG_MSG + "LD_LIBRARY_PATH = " + selectedOracleHome + File.separator
-						+ LIB_DIR + File.pathSeparator + selectedOracleHome);
 
-			if (hasCustomTNSAdmin) {
-				envVars.put(ENV_TNS_ADMIN, customTNSAdmin);
-			} else if (slaveMachine) {
-				envVars.put(ENV_TNS_ADMIN, selectedOracleHome);
+			if (migrations != null) {
+				runMigrations(resolution, instances, migrations);
+			} else if (ScriptType.fileList.name().equals(scriptType) && runAsBatch) {
+				runBatches(resolution, instances, scripts);
+			} else if (ScriptType.fileList.name().equals(scriptType) || instances.size() > 1) {
+				runTargets(resolution, instances, scripts);
 			} else {
-				boolean findTNSNAMESOracleHome = FileUtil.findFile(TNSNAMES_ORA, new File(selectedOracleHome));
-				boolean findTNSNAMESOracleHomeNetworkAdmin = FileUtil.findFile(TNSNAMES_ORA,
-						new File(selectedOracleHome + File.separator + NET_DIR));
-				if (findTNSNAMESOracleHomeNetworkAdmin) {
-					envVars.put(ENV_TNS_ADMIN, selectedOracleHome + File.separator + NET_DIR);
-					if (debug) {
-						listener.getLogger().println(DEBUG_MSG + "found TNSNAMES.ORA on "
-								+ new File(selectedOracleHome + File.separator + NET_DIR).getAbsolutePath());
-						listener.getLogger()
-								.println(DEBUG_MSG + "TNS_ADMIN = " + selectedOracleHome + File.separator + NET_DIR);
+				String key = getLedgerKey(scripts.get(0), instances.get(0));
+				if (!isApplied(key, listener.getLogger())) {
+					exitCode = runScript(resolution, instances.get(0), scripts.get(0), isInline(), listener.getLogger(),
+							true);
+					recordApplied(key, scripts.get(0), instances.get(0), exitCode);
+				}
+			}
+
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			listener.getLogger().println(MSG_ERROR + e.getMessage());
+			throw new RuntimeException(e);
+		}
+
+		if (exitCode != PROCESS_EXIT_CODE_SUCCESSFUL) {
+			listener.getLogger().println(LINE);
+			listener.getLogger().println("Exit code: " + exitCode);
+			listener.getLogger().println(LINE);
+			throw new RuntimeException(Messages.SQLPlusRunner_processErrorEnd());
+		}
+
+		listener.getLogger().println(LINE);
+	}
+
+	/**
+	 * Normalizes the encoding of the script and appends the exit command if it
+	 * is missing, unless it runs on a pooled session or in a batch, on the node
+	 * that holds the script.
+	 */
+	private void prepareScript(FilePath scriptFilePath) throws IOException, InterruptedException {
+
+		if (isInline())
+			return;
+		long preparing = timer.start();
+		boolean addExit = !usePooledSession && !runAsBatch;
+		ScriptPreparation.Result prepared = FileUtil.prepareScript(scriptFilePath, addExit);
+		exitFound.put(scriptFilePath.getRemote(), addExit || prepared.isExitFound());
+		timer.stop(PhaseTimer.Phase.PREPARATION, preparing);
+		if (debug)
+			listener.getLogger().println(DEBUG_MSG + "prepared script " + scriptFilePath.getRemote() + ": " + prepared);
+	}
+
+	/**
+	 * @return whether SQL*Plus ends once it ran the script, known from the
+	 *         preparation or read from the end of the file, for the drivers
+	 *         and copies written during the build
+	 */
+	private boolean endsWithExit(FilePath scriptFilePath) {
+
+		Boolean found = exitFound.get(scriptFilePath.getRemote());
+		return found != null ? found : FileUtil.hasExitCode(scriptFilePath);
+	}
+
+	/**
+	 * Runs every script on every instance. Up to {@link #maxInstances}
+	 * instances are used at the same time, each one by a worker of its own
+	 * with up to {@link #maxSessions} SQL*Plus sessions, so an instance only
+	 * starts once another one is done. The output of each run is kept apart
+	 * and printed by instance, in the order of the lists, and the results are
+	 * published in a {@link ScriptResultsAction}.
+	 */
+	private void runTargets(final OracleHomeResolution resolution, List<String> instances, List<FilePath> scripts)
+			throws IOException, InterruptedException {
+
+		// scripts are shared by all sessions, so they are prepared before any starts
+		for (FilePath scriptFilePath : scripts) {
+			prepareScript(scriptFilePath);
+		}
+
+		final int instanceSessions = Math.max(1, Math.min(maxSessions, scripts.size()));
+		int parallelInstances = Math.max(1, Math.min(maxInstances, instances.size()));
+		if (instances.size() > 1)
+			listener.getLogger().println(Messages.SQLPlusRunner_runningInstances(instances.size(), parallelInstances));
+		listener.getLogger().println(Messages.SQLPlusRunner_runningScripts(scripts.size(), instanceSessions));
+		listener.getLogger().println(LINE);
+
+		ExecutorService executor = Executors.newFixedThreadPool(parallelInstances,
+				new NamingThreadFactory(new DaemonThreadFactory(), "SQLPlusRunner " + build.getFullDisplayName()));
+
+		@SuppressWarnings("unchecked")
+		final FutureTask<ScriptResult>[][] tasks = new FutureTask[instances.size()][scripts.size()];
+		ByteArrayOutputStream[][] outputs = new ByteArrayOutputStream[instances.size()][scripts.size()];
+		for (int i = 0; i < instances.size(); i++) {
+			for (int s = 0; s < scripts.size(); s++) {
+				final String target = instances.get(i);
+				final FilePath scriptFilePath = scripts.get(s);
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				outputs[i][s] = output;
+				tasks[i][s] = new FutureTask<ScriptResult>(new Callable<ScriptResult>() {
+					@Override
+					public ScriptResult call() throws Exception {
+						if (stopped)
+							return new ScriptResult(scriptFilePath.getRemote(), target, ScriptResult.Status.NOT_RUN,
+									-1, 0, "");
+						return runBuffered(resolution, target, scriptFilePath, output);
+					}
+				});
+			}
+		}
+
+		try {
+			// instance by instance, so each one is done before the next starts
+			for (int i = 0; i < instances.size(); i++) {
+				final FutureTask<ScriptResult>[] instanceTasks = tasks[i];
+				executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws InterruptedException {
+						runInstance(instanceTasks, instanceSessions);
+						return null;
 					}
-				} else if (findTNSNAMESOracleHome) {
-					envVars.put(ENV_TNS_ADMIN, selectedOracleHome);
-					if (debug) {
-						listener.getLogger().println(
-								DEBUG_MSG + "found TNSNAMES.ORA on " + new File(selectedOracleHome).getAbsolutePath());
-						listener.getLogger().println(DEBUG_MSG + "TNS_ADMIN = " + selectedOracleHome);
+				});
+			}
+
+			List<ScriptResult> results = new ArrayList<ScriptResult>();
+			for (int i = 0; i < instances.size(); i++) {
+				for (int s = 0; s < scripts.size(); s++) {
+					ScriptResult result;
+					try {
+						result = tasks[i][s].get();
+					} catch (ExecutionException e) {
+						new PrintStream(outputs[i][s], true, UTF_8).println(MSG_ERROR + e.getCause());
+						result = new ScriptResult(scripts.get(s).getRemote(), instances.get(i), -1, 0,
+								getExcerpt(outputs[i][s]));
 					}
-				} else {
-					throw new RuntimeException(Messages.SQLPlusRunner_missingTNSNAMES());
+					outputs[i][s].writeTo(listener.getLogger());
+					listener.getLogger().println(LINE);
+					results.add(result);
 				}
 			}
 
-			// create command arguments
-			ArgumentListBuilder args = new ArgumentListBuilder();
+			ScriptResultsAction.add(build, results);
+			printSummary(results, instances.size() > 1);
 
-			String arg1 = user + SLASH + password;
-			if (instance != null) {
-				arg1 = arg1 + AT + instance;
+			for (ScriptResult result : results) {
+				if (!result.isSuccessful())
+					throw new RuntimeException(Messages.SQLPlusRunner_processErrorEnd());
 			}
+		} finally {
+			// on abort this interrupts the instances still running, which kills their sessions
+			executor.shutdownNow();
+		}
+	}
 
-			String arg2 = scriptFilePath.getRemote();
+	/**
+	 * Runs the scripts of one instance on up to <code>sessions</code>
+	 * threads, and returns when all of them are done.
+	 */
+	private void runInstance(FutureTask<ScriptResult>[] instanceTasks, int sessions) throws InterruptedException {
 
-			String sqlplus = SQLPLUS;
-			if (isWindowsOS()) {
-				sqlplus = SQLPLUS_FOR_WINDOWS;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(sessions, instanceTasks.length),
+				new NamingThreadFactory(new DaemonThreadFactory(), "SQLPlusRunner " + build.getFullDisplayName()));
+		try {
+			for (FutureTask<ScriptResult> task : instanceTasks) {
+				executor.execute(task);
 			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} finally {
+			// interrupted on abort: the sessions are killed, and what is left never runs
+			for (Runnable pending : executor.shutdownNow()) {
+				((FutureTask<?>) pending).cancel(false);
+			}
+		}
+	}
 
-			if (debug)
-				listener.getLogger().println("Work Directory = " + build.getRootDir());
+	/**
+	 * Runs all scripts on each instance with a single SQL*Plus launch, up to
+	 * {@link #maxInstances} instances at the same time. The batch stops on the
+	 * first SQL error, and the scripts after it are reported as not run.
+	 */
+	private void runBatches(final OracleHomeResolution resolution, List<String> instances,
+			final List<FilePath> scripts) throws IOException, InterruptedException {
 
-			if (hasCustomSQLPlusHome) {
-				args.add(customSQLPlusHome);
-			} else {
+		for (FilePath scriptFilePath : scripts) {
+			prepareScript(scriptFilePath);
+		}
 
-				listener.getLogger().println("SQL*Plus exec file = " + sqlplus);
-
-				boolean findSQLPlusOnOracleHomeBin = FileUtil.findFile(sqlplus,
-						new File(selectedOracleHome + File.separator + BIN_DIR));
-
-				boolean findSQLPlusOnOracleHome = FileUtil.findFile(sqlplus, new File(selectedOracleHome));
-
-				if (findSQLPlusOnOracleHomeBin) {
-					if (debug)
-						listener.getLogger().println(DEBUG_MSG + "found SQL*Plus on "
-								+ new File(selectedOracleHome + File.separator + BIN_DIR).getAbsolutePath());
-					args.add(selectedOracleHome + File.separator + BIN_DIR + File.separator + sqlplus);
-				} else if (findSQLPlusOnOracleHome) {
-					if (debug)
-						listener.getLogger().println(
-								DEBUG_MSG + "found SQL*Plus on " + new File(selectedOracleHome).getAbsolutePath());
-					args.add(selectedOracleHome + File.separator + File.separator + sqlplus);
-				} else if (slaveMachine) {
-					listener.getLogger().println("SQL*Plus directory: " + globalOracleHome + File.separator + BIN_DIR);
-					args.add(globalOracleHome + File.separator + BIN_DIR + File.separator + sqlplus);
-				} else {
-					throw new RuntimeException(Messages.SQLPlusRunner_missingSQLPlus());
-				}
-			}
+		int parallelInstances = Math.max(1, Math.min(maxInstances, instances.size()));
+		if (instances.size() > 1)
+			listener.getLogger().println(Messages.SQLPlusRunner_runningInstances(instances.size(), parallelInstances));
+		listener.getLogger().println(Messages.SQLPlusRunner_runningBatch(scripts.size()));
+		listener.getLogger().println(LINE);
 
-			args.add(SQLPLUS_TRY_LOGIN_JUST_ONCE);
-			args.add(arg1);
-			args.add(AT + arg2);
+		ExecutorService executor = Executors.newFixedThreadPool(parallelInstances,
+				new NamingThreadFactory(new DaemonThreadFactory(), "SQLPlusRunner " + build.getFullDisplayName()));
 
-			if (debug) {
-				listener.getLogger().println(DEBUG_MSG + " Statement: ");
-				listener.getLogger().println(LINE);
-				for (String a : args.toList()) {
-					listener.getLogger().print(a + " ");
+		List<Future<List<ScriptResult>>> futures = new ArrayList<Future<List<ScriptResult>>>();
+		List<ByteArrayOutputStream> outputs = new ArrayList<ByteArrayOutputStream>();
+		try {
+			for (final String target : instances) {
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				outputs.add(output);
+				futures.add(executor.submit(new Callable<List<ScriptResult>>() {
+					@Override
+					public List<ScriptResult> call() throws Exception {
+						return runBatch(resolution, target, scripts, output);
+					}
+				}));
+			}
+
+			List<ScriptResult> results = new ArrayList<ScriptResult>();
+			for (int i = 0; i < instances.size(); i++) {
+				try {
+					results.addAll(futures.get(i).get());
+				} catch (ExecutionException e) {
+					new PrintStream(outputs.get(i), true, UTF_8).println(MSG_ERROR + e.getCause());
+					for (FilePath scriptFilePath : scripts) {
+						results.add(new ScriptResult(scriptFilePath.getRemote(), instances.get(i),
+								ScriptResult.Status.NOT_RUN, -1, 0, ""));
+					}
 				}
+				outputs.get(i).writeTo(listener.getLogger());
 				listener.getLogger().println(LINE);
-				listener.getLogger().println(" ");
 			}
 
-			exitCode = launcher.launch().cmds(args).envs(build.getEnvironment(listener)).stdout(listener)
-					.pwd(build.getRootDir()).join();
+			ScriptResultsAction.add(build, results);
+			printSummary(results, instances.size() > 1);
 
-			listener.getLogger().printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
+			for (ScriptResult result : results) {
+				if (!result.isSuccessful())
+					throw new RuntimeException(Messages.SQLPlusRunner_processErrorEnd());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			listener.getLogger().println(MSG_ERROR + e.getMessage());
-			throw new RuntimeException(e);
+	private List<ScriptResult> runBatch(OracleHomeResolution resolution, String instance, List<FilePath> scripts,
+			ByteArrayOutputStream output) throws IOException, InterruptedException {
+
+		// the applied scripts are left out of the batch
+		String[] keys = new String[scripts.size()];
+		ScriptResult[] skipped = new ScriptResult[scripts.size()];
+		List<FilePath> pending = new ArrayList<FilePath>();
+		PrintStream skipLog = new PrintStream(output, true, UTF_8);
+		for (int s = 0; s < scripts.size(); s++) {
+			keys[s] = getLedgerKey(scripts.get(s), instance);
+			if (keys[s] != null && ScriptLedger.get().find(keys[s]) != null) {
+				skipLog.print(scripts.get(s).getRemote() + ": ");
+				isApplied(keys[s], skipLog);
+				skipped[s] = new ScriptResult(scripts.get(s).getRemote(), instance, ScriptResult.Status.SKIPPED, 0,
+						0, "");
+			} else {
+				pending.add(scripts.get(s));
+			}
+		}
+		if (pending.isEmpty())
+			return Arrays.asList(skipped);
+
+		List<ScriptResult> results = new ArrayList<ScriptResult>();
+		Iterator<ScriptResult> run = runDriver(resolution, instance, new BatchScript(pending), output).iterator();
+		for (int s = 0; s < scripts.size(); s++) {
+			if (skipped[s] != null) {
+				results.add(skipped[s]);
+			} else {
+				ScriptResult result = run.next();
+				if (result.getStatus() == ScriptResult.Status.SUCCESSFUL)
+					recordApplied(keys[s], scripts.get(s), instance, PROCESS_EXIT_CODE_SUCCESSFUL);
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Runs a batch driver, written next to the scripts on the node.
+	 *
+	 * @return result of each script of the batch
+	 */
+	private List<ScriptResult> runDriver(OracleHomeResolution resolution, String instance, BatchScript batch,
+			OutputStream output) throws IOException, InterruptedException {
+
+		long preparing = timer.start();
+		FilePath driver = workspace.createTextTempFile("sqlplus-batch-", ".sql", batch.getContent(!usePooledSession));
+		timer.stop(PhaseTimer.Phase.PREPARATION, preparing);
+		try {
+			PrintStream log = new PrintStream(batch.parse(output), true, UTF_8);
+			String instanceStr = instance == null ? LOCAL_DATABASE_MSG : instance;
+			log.println(MSG_SCRIPT + " " + driver.getRemote() + " " + ON + " " + user + SLASH + HIDDEN_PASSWORD + AT
+					+ instanceStr);
+
+			// the results are read from the whole output
+			int exitCode = runScript(resolution, instance, driver, false, log, false);
+			log.close();
+			return batch.getResults(instance, exitCode);
 		} finally {
-			if (tempScript != null) {
-				try {
-					boolean removed = tempScript.delete();
-					if (!removed)
-						listener.getLogger().printf(Messages.SQLPlusRunner_tempFileNotRemoved());
-				} catch (Exception e) {
-					listener.getLogger().println(MSG_ERROR + e.getMessage());
+			long cleaning = timer.start();
+			driver.delete();
+			timer.stop(PhaseTimer.Phase.CLEANUP, cleaning);
+		}
+	}
+
+	/**
+	 * Applies the pending migrations to each instance in turn, in one
+	 * SQL*Plus session per instance, recording each one in the ledger table
+	 * of the schema as soon as it runs.
+	 */
+	private void runMigrations(OracleHomeResolution resolution, List<String> instances, Migrations migrations)
+			throws IOException, InterruptedException {
+
+		List<ScriptResult> results = new ArrayList<ScriptResult>();
+		for (String target : instances) {
+			String instanceStr = target == null ? LOCAL_DATABASE_MSG : target;
+			List<Migrations.Migration> pending = migrations.getPending(readLedger(resolution, target));
+			listener.getLogger().println(Messages.SQLPlusRunner_migrationsPending(instanceStr,
+					migrations.getMigrations().size() - pending.size(), pending.size()));
+			if (pending.isEmpty())
+				continue;
+
+			List<FilePath> files = new ArrayList<FilePath>();
+			List<String> inserts = new ArrayList<String>();
+			for (Migrations.Migration migration : pending) {
+				files.add(migrations.getScript(migration));
+				inserts.add(Migrations.getInsert(migration, build.getFullDisplayName()));
+			}
+			results.addAll(runDriver(resolution, target, new BatchScript(files, inserts), listener.getLogger()));
+			listener.getLogger().println(LINE);
+		}
+
+		if (results.isEmpty())
+			return;
+		ScriptResultsAction.add(build, results);
+		printSummary(results, instances.size() > 1);
+
+		for (ScriptResult result : results) {
+			if (!result.isSuccessful())
+				throw new RuntimeException(Messages.SQLPlusRunner_processErrorEnd());
+		}
+	}
+
+	/**
+	 * Creates the ledger table of the schema if it is missing, and reads it.
+	 *
+	 * @return checksums of the applied migrations, by version
+	 */
+	private Map<String, String> readLedger(OracleHomeResolution resolution, String instance)
+			throws IOException, InterruptedException {
+
+		long preparing = timer.start();
+		FilePath query = workspace.createTextTempFile("sqlplus-migrations-", ".sql",
+				Migrations.getLedgerQuery(!usePooledSession));
+		timer.stop(PhaseTimer.Phase.PREPARATION, preparing);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			int exitCode = launchScript(resolution, instance, query, false, null, new PrintStream(output, true, UTF_8),
+					false);
+			if (exitCode != PROCESS_EXIT_CODE_SUCCESSFUL) {
+				output.writeTo(listener.getLogger());
+				throw new RuntimeException(Messages.SQLPlusRunner_migrationLedgerFailed(Migrations.TABLE));
+			}
+		} finally {
+			long cleaning = timer.start();
+			query.delete();
+			timer.stop(PhaseTimer.Phase.CLEANUP, cleaning);
+		}
+		return Migrations.parseLedger(output.toString(UTF_8));
+	}
+
+	private ScriptResult runBuffered(OracleHomeResolution resolution, String instance, FilePath scriptFilePath,
+			ByteArrayOutputStream output) throws IOException, InterruptedException {
+
+		PrintStream log = new PrintStream(output, true, UTF_8);
+		String instanceStr = instance == null ? LOCAL_DATABASE_MSG : instance;
+		log.println(MSG_SCRIPT + " " + scriptFilePath.getRemote() + " " + ON + " " + user + SLASH + HIDDEN_PASSWORD
+				+ AT + instanceStr);
+
+		String key = getLedgerKey(scriptFilePath, instance);
+		if (isApplied(key, log))
+			return new ScriptResult(scriptFilePath.getRemote(), instance, ScriptResult.Status.SKIPPED, 0, 0,
+					getExcerpt(output));
+
+		long start = System.currentTimeMillis();
+		int exitCode = runScript(resolution, instance, scriptFilePath, isInline(), log, true);
+		recordApplied(key, scriptFilePath, instance, exitCode);
+		return new ScriptResult(scriptFilePath.getRemote(), instance, exitCode, System.currentTimeMillis() - start,
+				getExcerpt(output));
+	}
+
+	/**
+	 * @return key of the script in the {@link ScriptLedger}, or
+	 *         <code>null</code> when applied scripts are not skipped
+	 */
+	private String getLedgerKey(FilePath scriptFilePath, String instance) throws IOException, InterruptedException {
+
+		if (!skipApplied || scriptFilePath == null)
+			return null;
+		boolean inline = isInline();
+		if (!inline && !scriptFilePath.exists())
+			return null;
+		long hashing = timer.start();
+		String hash = inline ? ScriptLedger.hash(inlineScript) : ScriptLedger.hash(scriptFilePath);
+		String key = ScriptLedger.key(hash, instance, user);
+		timer.stop(PhaseTimer.Phase.PREPARATION, hashing);
+		return key;
+	}
+
+	/**
+	 * @return whether the scripts of the build are the user defined one,
+	 *         which has no file
+	 */
+	private boolean isInline() {
+		return inlineScript != null;
+	}
+
+	private boolean isApplied(String key, PrintStream log) {
+
+		if (key == null)
+			return false;
+		ScriptLedger.Entry applied = ScriptLedger.get().find(key);
+		if (applied == null)
+			return false;
+		log.println(Messages.SQLPlusRunner_alreadyApplied(applied.getBuild()));
+		return true;
+	}
+
+	private void recordApplied(String key, FilePath scriptFilePath, String instance, int exitCode) {
+
+		if (key != null && exitCode == PROCESS_EXIT_CODE_SUCCESSFUL)
+			ScriptLedger.get().record(key, new ScriptLedger.Entry(scriptFilePath.getRemote(), instance,
+					build.getFullDisplayName(), System.currentTimeMillis()));
+	}
+
+	/**
+	 * Last lines of a run output, kept with its result.
+	 */
+	static String getExcerpt(ByteArrayOutputStream output) throws IOException {
+
+		String[] lines = output.toString(UTF_8).split("\\r?\\n");
+		StringBuilder excerpt = new StringBuilder();
+		for (int i = Math.max(0, lines.length - EXCERPT_LINES); i < lines.length; i++) {
+			excerpt.append(lines[i]).append('\n');
+		}
+		return excerpt.toString();
+	}
+
+	/**
+	 * Checks the net service names against the TNSNAMES.ORA of the launch
+	 * profile, and logs where each one connects to. EZConnect strings and
+	 * connect descriptors are left to SQL*Plus, and so is a missing name that
+	 * EZConnect may take as a host, with a warning, when it resolves on the
+	 * node.
+	 *
+	 * @throws RuntimeException
+	 *             if an alias cannot be resolved
+	 */
+	private void validateInstances(List<String> instances) throws IOException, InterruptedException {
+
+		if (profile.getTnsAdmin() == null)
+			return;
+		long resolving = timer.start();
+		TnsNames tnsNames = TnsNames.load(new FilePath(launcher.getChannel(), profile.getTnsAdmin()));
+		timer.stop(PhaseTimer.Phase.ORACLE_HOME, resolving);
+		if (debug)
+			listener.getLogger().println(DEBUG_MSG + tnsNames.getAliases().size() + " aliases in " + tnsNames.getFile());
+
+		for (String target : instances) {
+			if (!TnsNames.isAlias(target))
+				continue;
+			String descriptor = tnsNames.getDescriptor(target);
+			if (descriptor != null)
+				listener.getLogger().println(Messages.SQLPlusRunner_resolvedInstance(target, TnsNames.describe(descriptor)));
+			else if (!tnsNames.isComplete())
+				continue;
+			else if (tnsNames.isEzConnect() && TnsNames.isHostName(target)
+					&& TnsNames.resolvesHost(launcher.getChannel(), target))
+				listener.getLogger().println(Messages.SQLPlusRunner_instanceAsHost(target, tnsNames.getFile()));
+			else
+				throw new RuntimeException(Messages.SQLPlusRunner_unknownInstance(target, tnsNames.getFile()));
+		}
+	}
+
+	/**
+	 * Instances from the comma or line separated list of {@link #instance}.
+	 * An entry starting with <code>@</code> names a file in the workspace with
+	 * one TNS alias per line; blank lines and lines starting with
+	 * <code>#</code> are ignored.
+	 */
+	private List<String> findInstances() throws IOException, InterruptedException {
+
+		List<String> instances = new ArrayList<String>();
+		if (instance == null || instance.trim().length() < 1) {
+			instances.add(instance);
+			return instances;
+		}
+
+		Set<String> names = new LinkedHashSet<String>();
+		for (String name : instance.split(LIST_SEPARATOR)) {
+			name = name.trim();
+			if (name.startsWith(AT)) {
+				for (String alias : workspace.child(name.substring(AT.length())).readToString().split(LIST_SEPARATOR)) {
+					alias = alias.trim();
+					if (alias.length() > 0 && !alias.startsWith(COMMENT))
+						names.add(alias);
 				}
+			} else if (name.length() > 0) {
+				names.add(name);
 			}
 		}
+		instances.addAll(names);
+		return instances;
+	}
 
-		if (exitCode != PROCESS_EXIT_CODE_SUCCESSFUL) {
-			listener.getLogger().println(LINE);
-			listener.getLogger().println("Exit code: " + exitCode);
-			listener.getLogger().println(LINE);
-			throw new RuntimeException(Messages.SQLPlusRunner_processErrorEnd());
+	/**
+	 * Scripts matching the comma or line separated file names and patterns of
+	 * {@link #script}, relative to the workspace, in the order they are listed.
+	 */
+	private List<FilePath> findScripts() throws IOException, InterruptedException {
+
+		Set<FilePath> scripts = new LinkedHashSet<FilePath>();
+		for (String pattern : script.split(LIST_SEPARATOR)) {
+			pattern = pattern.trim();
+			if (pattern.length() < 1)
+				continue;
+			FilePath[] matches = workspace.list(pattern);
+			Arrays.sort(matches, new Comparator<FilePath>() {
+				@Override
+				public int compare(FilePath a, FilePath b) {
+					return a.getRemote().compareTo(b.getRemote());
+				}
+			});
+			scripts.addAll(Arrays.asList(matches));
 		}
+		return new ArrayList<FilePath>(scripts);
+	}
 
+	private void printPhases() {
+
+		listener.getLogger().println(Messages.SQLPlusRunner_phases());
+		for (PhaseTimer.Phase phase : timer.getPhases()) {
+			listener.getLogger()
+					.println(String.format(PHASE_FORMAT, phase.getDisplayName(), timer.getDurationString(phase)));
+		}
+		listener.getLogger().println(String.format(PHASE_FORMAT, Messages.PhaseTimer_total(), timer.getTotalString()));
 		listener.getLogger().println(LINE);
 	}
 
-	public void runGetSQLPLusVersion(String customSQLPlusHome, String oracleHome, TaskListener listener,
-			Launcher launcher) {
+	private void printSummary(List<ScriptResult> results, boolean showInstance) {
 
-		if (oracleHome == null || oracleHome.length() < 1) {
-			throw new RuntimeException(MSG_ORACLE_HOME_MISSING);
+		listener.getLogger().println(Messages.SQLPlusRunner_scriptsSummary());
+		listener.getLogger().println(LINE);
+		for (ScriptResult result : results) {
+			String status = result.isSkipped() ? Messages.SQLPlusRunner_scriptSkipped()
+					: result.isSuccessful() ? Messages.SQLPlusRunner_scriptSuccessful()
+					: result.isRun() ? Messages.SQLPlusRunner_scriptFailed() : Messages.SQLPlusRunner_scriptNotRun();
+			String name = result.getScript();
+			if (showInstance)
+				name = name + " " + AT + (result.getInstance() == null ? LOCAL_DATABASE_MSG : result.getInstance());
+			listener.getLogger().println(String.format(SUMMARY_FORMAT, status, result.getExitCode(),
+					Util.getTimeSpanString(result.getDuration()), name));
 		}
+		listener.getLogger().println(LINE);
+	}
+
+	/**
+	 * Runs one script, sending its output to <code>log</code>. With statement
+	 * timing, an instrumented copy runs instead, unless the results are
+	 * exported, and the output is not spooled. The user defined script is
+	 * written to the workspace for that copy.
+	 *
+	 * @param inline
+	 *            whether it is the user defined script, which has no file
+	 * @param spool
+	 *            whether the output may be kept on the node
+	 *
+	 * @return SQL*Plus exit code
+	 */
+	private int runScript(OracleHomeResolution resolution, String instance, FilePath scriptFilePath,
+			boolean inline, PrintStream log, boolean spool) throws IOException, InterruptedException {
+
+		if (!collectTiming || (spool && exportFile != null))
+			return launchScript(resolution, instance, scriptFilePath, inline, null, log, spool);
+
+		long preparing = timer.start();
+		FilePath copy = inline
+				? workspace.createTextTempFile("sqlplus-inline-", ".sql", inlineScript) : null;
+		TimingScript timing = null;
+		try {
+			timing = TimingScript.instrument(copy == null ? scriptFilePath : copy);
+		} finally {
+			if (timing == null && copy != null)
+				copy.delete();
+		}
+		timer.stop(PhaseTimer.Phase.PREPARATION, preparing);
+		try {
+			int exitCode = launchScript(resolution, instance, timing.getScript(), false, timing, log, false);
+			StatementTimingAction.add(build, timing.getTimings(scriptFilePath.getRemote(), instance));
+			return exitCode;
+		} finally {
+			long cleaning = timer.start();
+			timing.getScript().delete();
+			if (copy != null)
+				copy.delete();
+			timer.stop(PhaseTimer.Phase.CLEANUP, cleaning);
+		}
+	}
+
+	/**
+	 * Launches SQL*Plus, or uses a pooled session, for one script.
+	 *
+	 * @param inline
+	 *            whether it is the user defined script, fed to the standard
+	 *            input instead of a file
+	 * @param timing
+	 *            instrumented script, or <code>null</code>
+	 * @param spool
+	 *            whether the output may be kept on the node, by a
+	 *            {@link ResultExport} or an {@link OutputSpool}
+	 * @return SQL*Plus exit code
+	 */
+	private int launchScript(OracleHomeResolution resolution, String instance, FilePath scriptFilePath,
+			boolean inline, TimingScript timing, PrintStream log, boolean spool) throws IOException, InterruptedException {
+
+		if (profile.getTnsAdmin() == null)
+			throw new RuntimeException(Messages.SQLPlusRunner_missingTNSNAMES());
+
+		String arg1 = user + SLASH + password;
+		if (instance != null) {
+			arg1 = arg1 + AT + instance;
+		}
+
+		if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+			stopped = true;
+			log.println(Messages.SQLPlusRunner_timedOut(timeout));
+			return 1;
+		}
+
+		if (spool && exportFile != null && workspace != null)
+			return launchExport(instance, scriptFilePath, inline, arg1, log);
+
+		if (usePooledSession) {
+			FilePath sessionsDir = getSessionsDirectory();
+			if (sessionsDir != null) {
+				SQLPlusOutputFilter filter = new SQLPlusOutputFilter(log, failFast);
+				OutputStream out = timing == null ? filter : timing.parse(filter);
+				int exitCode;
+				try {
+					exitCode = runPooled(instance, arg1, scriptFilePath, inline, sessionsDir, out, filter);
+				} finally {
+					out.close();
+					filter.close();
+				}
+				exitCode = reportErrors(filter.getErrors(), filter.getErrorCount(), filter.isKilled(), exitCode, log);
+				log.printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
+				return exitCode;
+			}
+			log.println(Messages.SQLPlusRunner_sessionUnavailable());
+		}
+
+		// create command arguments
+		ArgumentListBuilder args = new ArgumentListBuilder();
+
+		String arg2 = scriptFilePath.getRemote();
+
+		// the user defined script goes to the standard input, silently so no prompt is printed
+		final String input = inline ? FileUtil.prepareScript(inlineScript, true) : null;
+
+		if (debug)
+			log.println("Work Directory = " + build.getRootDir());
+
+		args.add(profile.getExecutable());
+
+		if (input != null)
+			args.add(SQLPLUS_SILENT);
+		args.add(SQLPLUS_TRY_LOGIN_JUST_ONCE);
+		args.add(arg1);
+		if (input == null)
+			args.add(AT + arg2);
 
-		boolean slaveMachine = isSlaveMachine(launcher);
 		if (debug) {
-			listener.getLogger().println(" detected host = " + NetUtil.getHostName());
-			listener.getLogger().println(" slave machine ? " + slaveMachine);
+			log.println(DEBUG_MSG + " Statement: ");
+			log.println(LINE);
+			for (String a : args.toList()) {
+				log.print(a + " ");
+			}
+			log.println(LINE);
+			log.println(" ");
 		}
 
-		boolean hasCustomSQLPlusHome = false;
-		if (customSQLPlusHome != null && customSQLPlusHome.length()>0) {
-			hasCustomSQLPlusHome = true;
+		// an open input, for EXIT on timeout or abort, would keep a script without the exit command waiting
+		final boolean exits = input != null || endsWithExit(scriptFilePath);
+
+		if (spool && spoolOutput && workspace != null)
+			return launchSpooled(instance, scriptFilePath, args, input, exits, log);
+
+		SQLPlusOutputFilter filter = new SQLPlusOutputFilter(log, failFast);
+		OutputStream out = timing == null ? filter : timing.parse(filter);
+		SQLPlusWatchdog watchdog = new SQLPlusWatchdog(deadline, log);
+		int exitCode;
+		try {
+			long launching = timer.start();
+			ProcStarter starter = launcher.launch().cmds(args).envs(getLaunchEnvironment()).stdout(out)
+					.pwd(build.getRootDir());
+			final byte[] script = input == null ? null : input.getBytes(StandardCharsets.UTF_8);
+			if (exits)
+				starter.writeStdin();
+			else if (script != null)
+				starter.stdin(new ByteArrayInputStream(script));
+			final Proc proc = starter.start();
+			filter.attach(proc);
+			timer.stop(PhaseTimer.Phase.LAUNCH, launching);
+			long executing = timer.start();
+			try {
+				exitCode = watchdog.await(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						if (exits && script != null)
+							SQLPlusWatchdog.feed(proc.getStdin(), script);
+						return proc.join();
+					}
+				}, proc, exits ? proc.getStdin() : null);
+			} finally {
+				timer.stop(PhaseTimer.Phase.EXECUTION, executing);
+			}
+		} finally {
+			out.close();
+			filter.close();
 		}
 
-		if (!slaveMachine && !hasCustomSQLPlusHome) {
-			File directoryAccessTest = new File(oracleHome);
-			if (!directoryAccessTest.exists()) {
-				throw new RuntimeException(Messages.SQLPlusRunner_wrongOracleHome(oracleHome));
+		exitCode = reportTimeout(watchdog.isTimedOut(), exitCode);
+		exitCode = reportErrors(filter.getErrors(), filter.getErrorCount(), filter.isKilled(), exitCode, log);
+		log.printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
+		return exitCode;
+	}
+
+	/**
+	 * Runs SQL*Plus on the node, writing its output to a gzip file in
+	 * <code>sqlplus-output</code> of the workspace, with only its first,
+	 * error and last lines sent to <code>log</code>.
+	 *
+	 * @param input
+	 *            script for the standard input of SQL*Plus, or
+	 *            <code>null</code>
+	 * @param exits
+	 *            whether the script ends with the exit command
+	 * @return SQL*Plus exit code
+	 */
+	private int launchSpooled(String instance, FilePath scriptFilePath, ArgumentListBuilder args, String input,
+			boolean exits, PrintStream log) throws IOException, InterruptedException {
+
+		String name = String.format("%03d-%s%s.log.gz", spools.incrementAndGet(), scriptFilePath.getName(),
+				instance == null ? "" : "-" + instance.replaceAll("[^\\w.$#-]", "_"));
+		FilePath spool = workspace.child(SPOOL_DIR).child(String.valueOf(build.getNumber())).child(name);
+		long remaining = deadline > 0 ? Math.max(deadline - System.currentTimeMillis(), 1) : 0;
+
+		long executing = timer.start();
+		NodeOutput.Summary summary;
+		try {
+			summary = OutputSpool.launch(spool, args.toList(), input, exits, getLaunchEnvironment(), remaining,
+					failFast, log);
+		} finally {
+			timer.stop(PhaseTimer.Phase.EXECUTION, executing);
+		}
+
+		log.println(Messages.SQLPlusRunner_outputSpooled(summary.getLines(), summary.getBytes(), spool.getRemote()));
+		int exitCode = reportTimeout(summary.isTimedOut(), summary.getExitCode());
+		exitCode = reportErrors(summary.getErrors(), summary.getErrorCount(), summary.isKilled(), exitCode, log);
+		log.printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
+		return exitCode;
+	}
+
+	/**
+	 * Runs a script as a query on the node, its rows going to CSV files in the
+	 * workspace through a {@link ResultExport}. The CSV settings come on the
+	 * standard input of SQL*Plus, before the script or a call to its file.
+	 *
+	 * @return SQL*Plus exit code
+	 */
+	private int launchExport(String instance, FilePath scriptFilePath, boolean inline, String logon,
+			PrintStream log) throws IOException, InterruptedException {
+
+		String name = exportFile;
+		if (exportByScript)
+			name = ResultExport.insertSuffix(name, "-" + scriptFilePath.getName().replaceFirst("(?i)\\.sql$", ""));
+		if (exportByInstance && instance != null)
+			name = ResultExport.insertSuffix(name, "-" + instance.replaceAll("[^\\w.$#-]", "_"));
+
+		String input = inline ? ResultExport.getInlineScript(inlineScript)
+				: ResultExport.getScript(scriptFilePath.getRemote());
+		List<String> args = Arrays.asList(profile.getExecutable(), SQLPLUS_SILENT, SQLPLUS_TRY_LOGIN_JUST_ONCE, logon);
+		long remaining = deadline > 0 ? Math.max(deadline - System.currentTimeMillis(), 1) : 0;
+
+		long executing = timer.start();
+		NodeOutput.Summary summary;
+		try {
+			summary = NodeOutput.launch(workspace.child(name), new ResultExport.ExportFactory(exportChunkSize,
+					exportGzip), args, input, true, getLaunchEnvironment(), remaining, failFast, log);
+		} finally {
+			timer.stop(PhaseTimer.Phase.EXECUTION, executing);
+		}
+
+		double seconds = Math.max(summary.getDuration(), 1) / 1000.0;
+		double megabytes = summary.getBytes() / (1024.0 * 1024.0);
+		log.println(Messages.SQLPlusRunner_exported(summary.getLines(), String.format("%.1f", megabytes),
+				summary.getFiles().size(), String.format("%.0f", summary.getLines() / seconds),
+				String.format("%.1f", megabytes / seconds)));
+		for (String file : summary.getFiles()) {
+			log.println(" " + file);
+		}
+		int exitCode = reportTimeout(summary.isTimedOut(), summary.getExitCode());
+		exitCode = reportErrors(summary.getErrors(), summary.getErrorCount(), summary.isKilled(), exitCode, log);
+		log.printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
+		return exitCode;
+	}
+
+	/**
+	 * Stops the scripts not started yet if the watchdog stopped this one.
+	 *
+	 * @return exit code of the script
+	 */
+	private int reportTimeout(boolean timedOut, int exitCode) {
+
+		if (!timedOut)
+			return exitCode;
+		stopped = true;
+		return exitCode == PROCESS_EXIT_CODE_SUCCESSFUL ? 1 : exitCode;
+	}
+
+	/**
+	 * Lists the SQL*Plus errors seen in the output, and stops the scripts not
+	 * started yet if the process was killed on one of them.
+	 *
+	 * @return exit code of the script
+	 */
+	private int reportErrors(List<String> errors, int errorCount, boolean killed, int exitCode, PrintStream log) {
+
+		if (errorCount > 0) {
+			log.println(LINE);
+			log.println(Messages.SQLPlusRunner_errorsFound(errorCount));
+			for (String error : errors) {
+				log.println(" " + error);
+			}
+			log.println(LINE);
+		}
+		if (killed) {
+			stopped = true;
+			log.println(Messages.SQLPlusRunner_stoppedOnError());
+			if (exitCode == PROCESS_EXIT_CODE_SUCCESSFUL)
+				return 1;
+		}
+		return exitCode;
+	}
+
+	/**
+	 * Runs one script on a pooled session, starting a new one if none is idle.
+	 *
+	 * @return SQL*Plus exit code, 0 while the session stays alive
+	 */
+	private int runPooled(String instance, String logon, FilePath scriptFilePath, boolean inline,
+			FilePath sessionsDir, final OutputStream log, SQLPlusOutputFilter filter) throws IOException, InterruptedException {
+
+		// sessions outlive the build, so they only get the variables of the profile
+		String sqlplus = profile.getExecutable();
+		String key = SQLPlusSessionPool.key(getNodeName(), sqlplus, profile.getTnsAdmin(), instance, user);
+
+		PrintStream out = new PrintStream(filter, true, UTF_8);
+		long launching = timer.start();
+		SQLPlusSession session = SQLPlusSessionPool.borrow(key, logon);
+		if (session != null) {
+			out.println(Messages.SQLPlusRunner_reusingSession());
+			filter.attach(session.getProc());
+		} else {
+			out.println(Messages.SQLPlusRunner_startingSession());
+			session = SQLPlusSession.start(key, logon, launcher, sqlplus, profile.getEnvironment(), sessionsDir);
+			filter.attach(session.getProc());
+			if (!session.connect(filter)) {
+				session.close();
+				out.println(Messages.SQLPlusRunner_sessionNotConnected());
+				return 1;
 			}
 		}
+		timer.stop(PhaseTimer.Phase.LAUNCH, launching);
+
+		final SQLPlusSession running = session;
+		final String commands = inline ? inlineScript : AT + scriptFilePath.getRemote();
+		SQLPlusWatchdog watchdog = new SQLPlusWatchdog(deadline, out);
+		int exitCode;
+		boolean finished = false;
+		long executing = timer.start();
+		try {
+			exitCode = watchdog.await(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return running.execute(commands, log);
+				}
+			}, session.getProc(), session.getProc().getStdin());
+			finished = true;
+		} finally {
+			timer.stop(PhaseTimer.Phase.EXECUTION, executing);
+			// a session interrupted in the middle of a script is not reused
+			if (finished)
+				SQLPlusSessionPool.release(session);
+			else
+				session.close();
+		}
+
+		return reportTimeout(watchdog.isTimedOut(), exitCode);
+	}
+
+	public void runGetSQLPLusVersion(String customSQLPlusHome, OracleHomeResolution resolution,
+			TaskListener listener, Launcher launcher) {
+
+		boolean slaveMachine = isSlaveMachine(launcher);
+		if (debug) {
+			listener.getLogger().println(" detected host = " + NetUtil.getHostName());
+			listener.getLogger().println(" slave machine ? " + slaveMachine);
+		}
 
 		listener.getLogger().println(LINE);
-		listener.getLogger().println(MSG_ORACLE_HOME + oracleHome);
+		listener.getLogger().println(MSG_ORACLE_HOME + resolution.getOracleHome());
 		listener.getLogger().println(LINE);
 		listener.getLogger().println(MSG_GET_SQL_PLUS_VERSION);
 		try {
-			EnvVars envVars = new EnvVars();
-			envVars.put(ENV_ORACLE_HOME, oracleHome);
-			if (debug)
-				listener.getLogger().println(DEBUG_MSG + "ORACLE_HOME = " + oracleHome);
-			envVars.put(ENV_LD_LIBRARY_PATH, oracleHome + File.separator + LIB_DIR);
-			if (debug)
-				listener.getLogger().println(DEBUG_MSG + "LD_LIBRARY_PATH = " + oracleHome + File.separator + LIB_DIR);
-
-			// create command arguments
-			ArgumentListBuilder args = new ArgumentListBuilder();
-
-			String sqlplus = SQLPLUS;
-			if (isWindowsOS()) {
-				sqlplus = SQLPLUS_FOR_WINDOWS;
-			}
+			String sqlplus = profile.getExecutable();
 
-			if (debug)
-				listener.getLogger().println("SQL*Plus exec file = " + sqlplus);
+			// the version only changes with the executable
+			String node = getNodeName();
+			String fingerprint = SQLPlusVersionCache.fingerprint(new FilePath(launcher.getChannel(), sqlplus));
+			String version = fingerprint == null ? null : SQLPlusVersionCache.get(node, fingerprint);
 
-			if (hasCustomSQLPlusHome) {
-				args.add(customSQLPlusHome);
+			if (version != null) {
+				if (debug)
+					listener.getLogger().println(DEBUG_MSG + "using cached SQL*Plus version of " + fingerprint);
+				listener.getLogger().print(version);
 			} else {
+				// create command arguments
+				ArgumentListBuilder args = new ArgumentListBuilder();
+
+				args.add(sqlplus);
+				args.add(SQLPLUS_VERSION);
 
-				boolean findSQLPlusOnOracleHomeBin = FileUtil.findFile(sqlplus,
-						new File(oracleHome + File.separator + BIN_DIR));
-
-				boolean findSQLPlusOnOracleHome = FileUtil.findFile(sqlplus, new File(oracleHome));
-
-				if (findSQLPlusOnOracleHomeBin) {
-					listener.getLogger().println(
-							"found SQL*Plus on " + new File(oracleHome + File.separator + BIN_DIR).getAbsolutePath());
-					args.add(oracleHome + File.separator + BIN_DIR + File.separator + sqlplus);
-				} else if (findSQLPlusOnOracleHome) {
-					listener.getLogger().println("found SQL*Plus on " + new File(oracleHome).getAbsolutePath());
-					args.add(oracleHome + File.separator + File.separator + sqlplus);
-				} else if (slaveMachine) {
-					listener.getLogger().println("SQL*Plus directory: " + oracleHome + File.separator + BIN_DIR);
-					args.add(oracleHome + File.separator + BIN_DIR + File.separator + sqlplus);
-				} else {
-					throw new RuntimeException(Messages.SQLPlusRunner_missingSQLPlus());
+				if (debug) {
+					listener.getLogger().println(LINE);
+					listener.getLogger().println(DEBUG_MSG + "Statement:");
+					for (String a : args.toList()) {
+						listener.getLogger().print(a + " ");
+					}
+					listener.getLogger().println(" ");
+					listener.getLogger().println(LINE);
 				}
-			}
 
-			args.add(SQLPLUS_VERSION);
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				int exitCode = launcher.launch().cmds(args).envs(getLaunchEnvironment()).stdout(output)
+						.pwd(build.getRootDir()).join();
 
-			if (debug) {
-				listener.getLogger().println(LINE);
-				listener.getLogger().println(DEBUG_MSG + "Statement:");
-				for (String a : args.toList()) {
-					listener.getLogger().print(a + " ");
-				}
-				listener.getLogger().println(" ");
-				listener.getLogger().println(LINE);
-			}
+				version = output.toString(Charset.defaultCharset().name());
+				listener.getLogger().print(version);
+				listener.getLogger().printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
 
-			int exitCode = launcher.launch().cmds(args).envs(build.getEnvironment(listener)).stdout(listener)
-					.pwd(build.getRootDir() ).join();
+				if (exitCode == PROCESS_EXIT_CODE_SUCCESSFUL && fingerprint != null)
+					SQLPlusVersionCache.put(node, fingerprint, version);
+			}
 
-			listener.getLogger().printf(Messages.SQLPlusRunner_processEnd() + " %d%n", exitCode);
+			SQLPlusVersionCache.detected(node, sqlplus, SQLPlusVersionCache.getRelease(version));
 
 		} catch (RuntimeException e) {
 			listener.getLogger().println(MSG_ERROR + e.getMessage());
@@ -512,6 +1493,54 @@ public class SQLPlusRunner implements Serializable {
 		listener.getLogger().println(LINE);
 	}
 
+	/**
+	 * Finds SQL*Plus and TNS_ADMIN under ORACLE_HOME, reusing the result of a
+	 * previous build on the same node while ORACLE_HOME is unchanged.
+	 */
+	private OracleHomeResolution resolveOracleHome(String oracleHome, boolean slaveMachine)
+			throws IOException, InterruptedException {
+
+		OracleHomeResolution resolution = OracleHomeCache.resolve(getNodeName(),
+				new FilePath(launcher.getChannel(), oracleHome), launcher.isUnix(), oracleHome.equals(oracleClientHome),
+				slaveMachine, timer);
+		if (debug) {
+			listener.getLogger().println(DEBUG_MSG + "found SQL*Plus on " + resolution.getSqlplus());
+			listener.getLogger().println(DEBUG_MSG + "found TNSNAMES.ORA on " + resolution.getTnsAdmin());
+		}
+		return resolution;
+	}
+
+	/**
+	 * @return environment of the build with the variables of the launch
+	 *         profile, made on the first launch of the step
+	 */
+	private synchronized EnvVars getLaunchEnvironment() throws IOException, InterruptedException {
+
+		if (launchEnvironment == null)
+			launchEnvironment = profile.apply(build.getEnvironment(listener));
+		return launchEnvironment;
+	}
+
+	/**
+	 * @return directory for the pooled sessions in the root of the node, or
+	 *         <code>null</code> if the node is unknown
+	 */
+	private FilePath getSessionsDirectory() {
+		Node node = getNode();
+		FilePath root = node == null ? null : node.getRootPath();
+		return root == null ? null : root.child(SESSIONS_DIR);
+	}
+
+	private Node getNode() {
+		Computer computer = workspace == null ? null : workspace.toComputer();
+		return computer == null ? null : computer.getNode();
+	}
+
+	private String getNodeName() {
+		Computer computer = workspace == null ? null : workspace.toComputer();
+		return computer == null ? "" : computer.getName();
+	}
+
 	private boolean isSlaveMachine(Launcher launcher) {
 		VirtualChannel vc = launcher.getChannel();
 		boolean slaveMachine = true;
@@ -521,10 +1550,8 @@ public class SQLPlusRunner implements Serializable {
 		return slaveMachine;
 	}
 
-	private boolean isWindowsOS() {
-
-		return System.getProperty(OPERATION_SYSTEM).toLowerCase().indexOf(WINDOWS_OS) >= 0;
-
+	private String pathSeparator() {
+		return launcher.isUnix() ? ":" : ";";
 	}
 
 }
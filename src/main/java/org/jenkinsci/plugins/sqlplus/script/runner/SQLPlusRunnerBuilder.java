@@ -1,17 +1,18 @@
 package org.jenkinsci.plugins.sqlplus.script.runner;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.Locale;
 
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import com.cloudbees.plugins.credentials.Credentials;
 import com.cloudbees.plugins.credentials.CredentialsMatcher;
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernameListBoxModel;
@@ -24,7 +25,9 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.AbstractProject;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Computer;
 import hudson.model.ItemGroup;
 import hudson.model.Run;
@@ -34,7 +37,6 @@ import hudson.security.AccessControlled;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.ListBoxModel;
-import hudson.util.Secret;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
@@ -43,6 +45,9 @@ import net.sf.json.JSONObject;
 @Symbol("sqlplusrunner")
 public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 
+	private static final int DEFAULT_MAX_SESSIONS = 1;
+	private static final int DEFAULT_MAX_INSTANCES = 1;
+
 	private final String credentialsId;
 	private final String user;
 	private final String password;
@@ -54,6 +59,19 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 	private   String customOracleHome;
 	private   String customSQLPlusHome;
 	private   String customTNSAdmin;
+	private   int maxSessions = DEFAULT_MAX_SESSIONS;
+	private   int maxInstances = DEFAULT_MAX_INSTANCES;
+	private   boolean usePooledSession;
+	private   boolean runAsBatch;
+	private   boolean failFast;
+	private   boolean collectTiming;
+	private   int timeout;
+	private   boolean skipApplied;
+	private   boolean spoolOutput;
+	private   String exportFile;
+	private   int exportChunkSize;
+	private   boolean exportGzip;
+	private   String oracleClient;
 
 	
 	@DataBoundConstructor
@@ -97,6 +115,71 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 		this.customTNSAdmin = customTNSAdmin;
 	}
 
+	@DataBoundSetter
+	public void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+	}
+
+	@DataBoundSetter
+	public void setMaxInstances(int maxInstances) {
+		this.maxInstances = maxInstances;
+	}
+
+	@DataBoundSetter
+	public void setUsePooledSession(boolean usePooledSession) {
+		this.usePooledSession = usePooledSession;
+	}
+
+	@DataBoundSetter
+	public void setRunAsBatch(boolean runAsBatch) {
+		this.runAsBatch = runAsBatch;
+	}
+
+	@DataBoundSetter
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	@DataBoundSetter
+	public void setCollectTiming(boolean collectTiming) {
+		this.collectTiming = collectTiming;
+	}
+
+	@DataBoundSetter
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	@DataBoundSetter
+	public void setSkipApplied(boolean skipApplied) {
+		this.skipApplied = skipApplied;
+	}
+
+	@DataBoundSetter
+	public void setSpoolOutput(boolean spoolOutput) {
+		this.spoolOutput = spoolOutput;
+	}
+
+	@DataBoundSetter
+	public void setExportFile(String exportFile) {
+		this.exportFile = exportFile;
+	}
+
+	@DataBoundSetter
+	public void setExportChunkSize(int exportChunkSize) {
+		this.exportChunkSize = exportChunkSize;
+	}
+
+	@DataBoundSetter
+	public void setExportGzip(boolean exportGzip) {
+		this.exportGzip = exportGzip;
+	}
+
+	@DataBoundSetter
+	public void setOracleClient(String oracleClient) {
+		this.oracleClient = Util.fixEmptyAndTrim(oracleClient);
+	}
+
 	public String getUser() {
 		return user;
 	}
@@ -133,6 +216,58 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 		return customTNSAdmin;
 	}
 
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	public int getMaxInstances() {
+		return maxInstances;
+	}
+
+	public boolean isUsePooledSession() {
+		return usePooledSession;
+	}
+
+	public boolean isRunAsBatch() {
+		return runAsBatch;
+	}
+
+	public boolean isFailFast() {
+		return failFast;
+	}
+
+	public boolean isCollectTiming() {
+		return collectTiming;
+	}
+
+	public int getTimeout() {
+		return timeout;
+	}
+
+	public boolean isSkipApplied() {
+		return skipApplied;
+	}
+
+	public boolean isSpoolOutput() {
+		return spoolOutput;
+	}
+
+	public String getExportFile() {
+		return exportFile;
+	}
+
+	public int getExportChunkSize() {
+		return exportChunkSize;
+	}
+
+	public boolean isExportGzip() {
+		return exportGzip;
+	}
+
+	public String getOracleClient() {
+		return oracleClient;
+	}
+
 	public String getCredentialsId() {
 		return credentialsId;
 	}
@@ -148,26 +283,42 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 			sqlScript = script;
 		}
 
-		List<StandardUsernamePasswordCredentials> lookupCredentials = CredentialsProvider.lookupCredentials(
-				StandardUsernamePasswordCredentials.class, Jenkins.getInstance(), ACL.SYSTEM, null, null);
-		CredentialsMatcher credentialsMatcher = CredentialsMatchers.withId(credentialsId);
-		StandardUsernamePasswordCredentials credentials = CredentialsMatchers.firstOrNull(lookupCredentials,
-				credentialsMatcher);
+		PhaseTimer timer = new PhaseTimer();
+		long lookup = timer.start();
+		StandardUsernamePasswordCredentials credentials = CredentialsCache.find(credentialsId, build);
 		if (credentials == null && (this.user == null)) {
 			throw new AbortException("Invalid credentials " + credentialsId
 					+ ". Failed to initialize credentials or load user and pass");
 		}
-		final Secret password = credentials.getPassword();
+		timer.stop(PhaseTimer.Phase.CREDENTIALS, lookup);
 
 		final String usr = credentials == null ? this.user : credentials.getUsername();
-		final String pwd = credentials == null ? this.password : password.getPlainText();
+		final String pwd = credentials == null ? this.password : credentials.getPassword().getPlainText();
 
 		EnvVars env = build.getEnvironment(listener);
 
-		SQLPlusRunner sqlPlusRunner = new SQLPlusRunner(build, listener, launcher,
+		String oracleClientHome = null;
+		if (oracleClient != null) {
+			long installing = timer.start();
+			oracleClientHome = OracleClientInstallation.getHome(oracleClient, workspace, env, listener);
+			timer.stop(PhaseTimer.Phase.ORACLE_HOME, installing);
+		}
+
+		SQLPlusRunner sqlPlusRunner = new SQLPlusRunner(build, workspace, listener, launcher,
 				getDescriptor().isHideSQLPlusVersion(), usr, pwd, env.expand(instance), env.expand(sqlScript),
 				getDescriptor().globalOracleHome,getDescriptor().globalSQLPlusHome ,getDescriptor().globalTNSAdmin, scriptType, customOracleHome, customSQLPlusHome, customTNSAdmin,
-				getDescriptor().tryToDetectOracleHome, getDescriptor().isDebug());
+				getDescriptor().tryToDetectOracleHome, getDescriptor().isDebug(), maxSessions, maxInstances);
+		sqlPlusRunner.setUsePooledSession(usePooledSession);
+		sqlPlusRunner.setRunAsBatch(runAsBatch);
+		sqlPlusRunner.setFailFast(failFast);
+		sqlPlusRunner.setCollectTiming(collectTiming);
+		sqlPlusRunner.setPhaseTimer(timer);
+		sqlPlusRunner.setTimeout(timeout > 0 ? timeout : getDescriptor().getGlobalTimeout());
+		sqlPlusRunner.setSkipApplied(skipApplied);
+		sqlPlusRunner.setSpoolOutput(spoolOutput);
+		sqlPlusRunner.setExport(exportFile == null ? null : env.expand(exportFile), exportChunkSize * 1024L * 1024L,
+				exportGzip);
+		sqlPlusRunner.setOracleClient(oracleClientHome);
 
 		try {
 
@@ -196,12 +347,14 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 		private static final String HIDE_SQL_PLUS_VERSION = "hideSQLPlusVersion";
 		private static final String TRY_TO_DETECT_ORACLE_HOME = "tryToDetectOracleHome";
 		private static final String DEBUG = "debug";
+		private static final String GLOBAL_TIMEOUT = "globalTimeout";
 		private boolean hideSQLPlusVersion;
 		private boolean tryToDetectOracleHome;
 		private boolean debug;
 		private String globalOracleHome;
 		private String globalSQLPlusHome;
 		private String globalTNSAdmin;
+		private int globalTimeout;
 		
 		public DescriptorImpl() {
 			load();
@@ -225,6 +378,7 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 			globalTNSAdmin = formData.getString(GLOBAL_TNS_ADMIN);
 			tryToDetectOracleHome = formData.getBoolean(TRY_TO_DETECT_ORACLE_HOME);
 			debug = formData.getBoolean(DEBUG);
+			globalTimeout = formData.optInt(GLOBAL_TIMEOUT, 0);
 			save();
 			return super.configure(req, formData);
 		}
@@ -277,6 +431,14 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 			this.globalTNSAdmin = globalTNSAdmin;
 		}
 
+		public int getGlobalTimeout() {
+			return globalTimeout;
+		}
+
+		public void setGlobalTimeout(int globalTimeout) {
+			this.globalTimeout = globalTimeout;
+		}
+
 		@SuppressWarnings("deprecation")
 		public ListBoxModel doFillCredentialsIdItems(@AncestorInPath ItemGroup<?> context) {
 			if (!(context instanceof AccessControlled ? (AccessControlled) context : Jenkins.getInstance())
@@ -293,6 +455,43 @@ public class SQLPlusRunnerBuilder extends Builder implements SimpleBuildStep {
 			}, CredentialsProvider.lookupCredentials(StandardUsernameCredentials.class, context, ACL.SYSTEM, null,
 					null));
 		}
+
+		/**
+		 * Net service names of the global TNS_ADMIN, or of the global
+		 * ORACLE_HOME, starting with the last instance typed.
+		 */
+		public AutoCompletionCandidates doAutoCompleteInstance(@AncestorInPath ItemGroup<?> context,
+				@QueryParameter String value) throws IOException, InterruptedException {
+			AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+			if (!(context instanceof AccessControlled ? (AccessControlled) context : Jenkins.getInstance())
+					.hasPermission(Computer.CONFIGURE)) {
+				return candidates;
+			}
+			String tnsAdmin = globalTNSAdmin;
+			if ((tnsAdmin == null || tnsAdmin.length() < 1) && globalOracleHome != null
+					&& globalOracleHome.length() > 0)
+				tnsAdmin = new File(new File(globalOracleHome, "network"), "admin").getPath();
+			if (tnsAdmin == null || tnsAdmin.length() < 1 || !new File(tnsAdmin).isDirectory())
+				return candidates;
+
+			String typed = value == null ? "" : value.substring(value.lastIndexOf(',') + 1).trim();
+			typed = typed.toUpperCase(Locale.ENGLISH);
+			for (String alias : TnsNames.load(new FilePath(new File(tnsAdmin))).getAliases()) {
+				if (alias.startsWith(typed))
+					candidates.add(alias);
+			}
+			return candidates;
+		}
+
+		public ListBoxModel doFillOracleClientItems() {
+			ListBoxModel items = new ListBoxModel();
+			items.add(Messages.SQLPlusRunnerBuilder_noOracleClient(), "");
+			for (OracleClientInstallation installation : Jenkins.getInstance()
+					.getDescriptorByType(OracleClientInstallation.DescriptorImpl.class).getInstallations()) {
+				items.add(installation.getName());
+			}
+			return items;
+		}
 	}
 
 }
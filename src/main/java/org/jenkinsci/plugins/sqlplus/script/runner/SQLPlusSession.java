@@ -0,0 +1,263 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+
+/**
+ * A long lived <code>sqlplus -S /nolog</code> process, fed with commands
+ * through its standard input.
+ *
+ * Each command batch ends with a <code>PROMPT</code> of a marker unique to the
+ * session, so the end of a script is found in the output without waiting for
+ * the process to exit.
+ *
+ * After each script SQL*Plus connects again, so the next one gets a new
+ * database session: settings made with <code>ALTER SESSION</code>, enabled
+ * roles, package state and the rows of temporary tables do not carry over.
+ * The SQL*Plus settings of a new session are kept with <code>STORE SET</code>
+ * and restored too, together with breaks, computes, columns and titles.
+ * Substitution and bind variables belong to SQL*Plus itself, and are kept.
+ */
+public class SQLPlusSession {
+
+	private static final String MARKER_PREFIX = "JENKINS-SQLPLUS-";
+	private static final String CONNECTED = "CONNECTED";
+	private static final String END = "END";
+	private static final String READY = "READY";
+	private static final String SETTINGS_SUFFIX = ".sql";
+	private static final String NEW_LINE = "\n";
+
+	private static final String[] RESET = { "WHENEVER SQLERROR CONTINUE NONE", "WHENEVER OSERROR CONTINUE NONE",
+			"SPOOL OFF", "CLEAR BREAKS", "CLEAR COMPUTES", "CLEAR COLUMNS", "TTITLE OFF", "BTITLE OFF" };
+
+	private final String key;
+
+	private final String logon;
+
+	private final Proc proc;
+
+	private final OutputStream stdin;
+
+	private final InputStream stdout;
+
+	private final FilePath settings;
+
+	private final String marker;
+
+	private volatile long lastUsed;
+
+	/** cleared when SQL*Plus could not connect again after a script */
+	private volatile boolean reusable = true;
+
+	private SQLPlusSession(String key, String logon, Proc proc, FilePath settings, String marker) {
+		this.key = key;
+		this.logon = logon;
+		this.proc = proc;
+		this.stdin = proc.getStdin();
+		this.stdout = new BufferedInputStream(proc.getStdout());
+		this.settings = settings;
+		this.marker = marker;
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Starts SQL*Plus without connecting.
+	 *
+	 * @param directory
+	 *            working directory of the process, on the node, where the
+	 *            session settings are stored
+	 */
+	public static SQLPlusSession start(String key, String logon, Launcher launcher, String sqlplus,
+			Map<String, String> envVars, FilePath directory) throws IOException, InterruptedException {
+
+		directory.mkdirs();
+		// only the Oracle variables, so the process does not look like part of the build
+		Proc proc = launcher.launch().cmds(sqlplus, "-S", "/nolog").envs(envVars).pwd(directory).writeStdin()
+				.readStdout().start();
+		return open(key, logon, proc, directory);
+	}
+
+	/**
+	 * Takes over SQL*Plus started without connecting, with its standard input
+	 * and output open.
+	 *
+	 * @param directory
+	 *            working directory of the process
+	 */
+	public static SQLPlusSession open(String key, String logon, Proc proc, FilePath directory) throws IOException {
+
+		String marker = MARKER_PREFIX + UUID.randomUUID();
+		FilePath settings = directory.child(marker + SETTINGS_SUFFIX);
+		SQLPlusSession session = new SQLPlusSession(key, logon, proc, settings, marker);
+		session.send("STORE SET " + settings.getRemote() + " REPLACE");
+		return session;
+	}
+
+	/**
+	 * Connects the session, writing the SQL*Plus messages to <code>log</code>
+	 * if it fails.
+	 *
+	 * @return whether the session is connected
+	 */
+	public boolean connect(OutputStream log) throws IOException {
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		if (login(output) && isConnected(output))
+			return true;
+		output.writeTo(log);
+		return false;
+	}
+
+	/**
+	 * Connects, then restores the SQL*Plus settings of a new session.
+	 *
+	 * @return <code>false</code> if the process ended
+	 */
+	private boolean login(ByteArrayOutputStream output) throws IOException {
+
+		// the logon goes through stdin, never to the command line
+		send("CONNECT " + logon);
+		send("SET HEADING OFF FEEDBACK OFF");
+		send("SELECT '" + marker + "' || '" + CONNECTED + "' FROM DUAL;");
+		send("@" + settings.getRemote());
+		send("PROMPT " + marker + READY);
+		return readUntil(marker + READY, output);
+	}
+
+	private boolean isConnected(ByteArrayOutputStream output) throws IOException {
+		return output.toString(StandardCharsets.UTF_8.name()).contains(marker + CONNECTED);
+	}
+
+	/**
+	 * Runs a script on the node, writing its output to <code>log</code>, and
+	 * connects again. Changes are committed, as SQL*Plus does on exit.
+	 *
+	 * @return 0 if the session is still alive, or the SQL*Plus exit code if
+	 *         the script ended it
+	 */
+	public int run(String script, OutputStream log) throws IOException, InterruptedException {
+		return execute("@" + script, log);
+	}
+
+	/**
+	 * Runs the lines of a script held in memory, as {@link #run} does with a
+	 * file.
+	 */
+	public int execute(String commands, OutputStream log) throws IOException, InterruptedException {
+
+		lastUsed = System.currentTimeMillis();
+		send(commands);
+		send("COMMIT;");
+		send("PROMPT " + marker + END);
+		if (!readUntil(marker + END, log))
+			return proc.join();
+
+		for (String command : RESET) {
+			send(command);
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		if (!login(output))
+			return proc.join();
+		// the script ran, but a session that cannot log on again is not reused
+		reusable = isConnected(output);
+
+		lastUsed = System.currentTimeMillis();
+		return 0;
+	}
+
+	public Proc getProc() {
+		return proc;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getLogon() {
+		return logon;
+	}
+
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * @return whether SQL*Plus connected again after the last script
+	 */
+	public boolean isReusable() {
+		return reusable;
+	}
+
+	public boolean isAlive() {
+		try {
+			return proc.isAlive();
+		} catch (IOException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Asks SQL*Plus to exit, then kills it in case it does not.
+	 */
+	public void close() {
+
+		try {
+			send("EXIT");
+			stdin.close();
+		} catch (IOException e) {
+			// already gone
+		}
+		try {
+			proc.kill();
+			settings.delete();
+		} catch (IOException e) {
+			// the node is gone, and the process with it
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void send(String command) throws IOException {
+		stdin.write((command + NEW_LINE).getBytes(StandardCharsets.UTF_8));
+		stdin.flush();
+	}
+
+	/**
+	 * Copies the output to <code>out</code>, if not <code>null</code>, until a
+	 * line with the marker.
+	 *
+	 * @return <code>false</code> if the process ended first
+	 */
+	private boolean readUntil(String marker, OutputStream out) throws IOException {
+
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = stdout.read()) != -1) {
+			line.write(b);
+			if (b == '\n') {
+				if (line.toString(StandardCharsets.US_ASCII.name()).trim().equals(marker))
+					return true;
+				if (out != null)
+					line.writeTo(out);
+				line.reset();
+			}
+		}
+		if (out != null)
+			line.writeTo(out);
+		return false;
+	}
+
+}
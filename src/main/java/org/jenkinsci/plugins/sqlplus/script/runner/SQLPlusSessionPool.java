@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.PeriodicWork;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+
+/**
+ * Idle {@link SQLPlusSession}s, by node, SQL*Plus executable, TNS_ADMIN,
+ * instance and user.
+ *
+ * At most {@link #MAX_IDLE} sessions are kept per key, and a session idle for
+ * longer than {@link #IDLE_TIMEOUT} milliseconds is closed.
+ */
+public class SQLPlusSessionPool {
+
+	public static final int MAX_IDLE = Integer.getInteger(SQLPlusSessionPool.class.getName() + ".maxIdle", 2);
+
+	public static final long IDLE_TIMEOUT = Long.getLong(SQLPlusSessionPool.class.getName() + ".idleTimeout",
+			TimeUnit.MINUTES.toMillis(10));
+
+	private static final String SEPARATOR = "|";
+
+	private static final ConcurrentMap<String, Deque<SQLPlusSession>> POOL = new ConcurrentHashMap<String, Deque<SQLPlusSession>>();
+
+	public static String key(String node, String sqlplus, String tnsAdmin, String instance, String user) {
+		return node + SEPARATOR + sqlplus + SEPARATOR + tnsAdmin + SEPARATOR + instance + SEPARATOR + user;
+	}
+
+	/**
+	 * Takes an idle session, closing the ones found dead, expired or opened
+	 * with another logon on the way.
+	 *
+	 * @return the session, or <code>null</code> if a new one must be started
+	 */
+	public static SQLPlusSession borrow(String key, String logon) {
+
+		Deque<SQLPlusSession> idle = POOL.get(key);
+		if (idle == null)
+			return null;
+		while (true) {
+			SQLPlusSession session;
+			synchronized (idle) {
+				session = idle.pollFirst();
+			}
+			if (session == null)
+				return null;
+			if (isUsable(session, System.currentTimeMillis()) && session.getLogon().equals(logon))
+				return session;
+			session.close();
+		}
+	}
+
+	/**
+	 * Gives a session back after a script, closing it if it died, could not
+	 * connect again, or there are enough idle sessions already.
+	 */
+	public static void release(SQLPlusSession session) {
+
+		if (session.isReusable() && session.isAlive()) {
+			Deque<SQLPlusSession> idle = POOL.get(session.getKey());
+			if (idle == null) {
+				POOL.putIfAbsent(session.getKey(), new LinkedList<SQLPlusSession>());
+				idle = POOL.get(session.getKey());
+			}
+			synchronized (idle) {
+				if (idle.size() < MAX_IDLE) {
+					// most recently used first, so the others expire
+					idle.addFirst(session);
+					return;
+				}
+			}
+		}
+		session.close();
+	}
+
+	/**
+	 * Closes the sessions idle for too long.
+	 */
+	public static void evictIdle() {
+
+		long now = System.currentTimeMillis();
+		List<SQLPlusSession> expired = new ArrayList<SQLPlusSession>();
+		for (Deque<SQLPlusSession> idle : POOL.values()) {
+			synchronized (idle) {
+				for (Iterator<SQLPlusSession> it = idle.iterator(); it.hasNext();) {
+					SQLPlusSession session = it.next();
+					if (now - session.getLastUsed() > IDLE_TIMEOUT) {
+						it.remove();
+						expired.add(session);
+					}
+				}
+			}
+		}
+		for (SQLPlusSession session : expired) {
+			session.close();
+		}
+	}
+
+	public static void closeNode(String node) {
+
+		String prefix = node + SEPARATOR;
+		List<SQLPlusSession> closed = new ArrayList<SQLPlusSession>();
+		for (Map.Entry<String, Deque<SQLPlusSession>> entry : POOL.entrySet()) {
+			if (!entry.getKey().startsWith(prefix))
+				continue;
+			Deque<SQLPlusSession> idle = entry.getValue();
+			synchronized (idle) {
+				closed.addAll(idle);
+				idle.clear();
+			}
+		}
+		for (SQLPlusSession session : closed) {
+			session.close();
+		}
+	}
+
+	private static boolean isUsable(SQLPlusSession session, long now) {
+		return now - session.getLastUsed() <= IDLE_TIMEOUT && session.isAlive();
+	}
+
+	@Extension
+	public static class IdleSessions extends PeriodicWork {
+
+		@Override
+		public long getRecurrencePeriod() {
+			return MIN;
+		}
+
+		@Override
+		protected void doRun() {
+			evictIdle();
+		}
+	}
+
+	/**
+	 * Sessions of a node that went offline are gone with its channel.
+	 */
+	@Extension
+	public static class NodeListener extends ComputerListener {
+
+		@Override
+		public void onOffline(Computer c, OfflineCause cause) {
+			closeNode(c.getName());
+		}
+	}
+
+}
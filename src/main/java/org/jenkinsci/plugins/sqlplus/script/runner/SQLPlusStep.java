@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.ItemGroup;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+
+/**
+ * <code>sqlplus</code> Pipeline step, running one script as a durable task:
+ * SQL*Plus runs on the node without a controller thread waiting for it, and
+ * keeps running across controller restarts.
+ *
+ * ORACLE_HOME comes from the step, then from its Oracle client tool, then from
+ * the global configuration of {@link SQLPlusRunnerBuilder}, then from the
+ * <code>ORACLE_HOME</code> of the node; SQL*Plus and TNS_ADMIN are found
+ * there as the build step finds them, unless the step or the global
+ * configuration sets them.
+ */
+public class SQLPlusStep extends Step {
+
+	private final String credentialsId;
+	private String instance;
+	private String script;
+	private String scriptContent;
+	private String customOracleHome;
+	private String customSQLPlusHome;
+	private String customTNSAdmin;
+	private String oracleClient;
+
+	@DataBoundConstructor
+	public SQLPlusStep(String credentialsId) {
+		this.credentialsId = credentialsId;
+	}
+
+	@DataBoundSetter
+	public void setInstance(String instance) {
+		this.instance = instance;
+	}
+
+	@DataBoundSetter
+	public void setScript(String script) {
+		this.script = script;
+	}
+
+	@DataBoundSetter
+	public void setScriptContent(String scriptContent) {
+		this.scriptContent = scriptContent;
+	}
+
+	@DataBoundSetter
+	public void setCustomOracleHome(String customOracleHome) {
+		this.customOracleHome = customOracleHome;
+	}
+
+	@DataBoundSetter
+	public void setCustomSQLPlusHome(String customSQLPlusHome) {
+		this.customSQLPlusHome = customSQLPlusHome;
+	}
+
+	@DataBoundSetter
+	public void setCustomTNSAdmin(String customTNSAdmin) {
+		this.customTNSAdmin = customTNSAdmin;
+	}
+
+	@DataBoundSetter
+	public void setOracleClient(String oracleClient) {
+		this.oracleClient = Util.fixEmptyAndTrim(oracleClient);
+	}
+
+	public String getCredentialsId() {
+		return credentialsId;
+	}
+
+	public String getInstance() {
+		return instance;
+	}
+
+	public String getScript() {
+		return script;
+	}
+
+	public String getScriptContent() {
+		return scriptContent;
+	}
+
+	public String getCustomOracleHome() {
+		return customOracleHome;
+	}
+
+	public String getCustomSQLPlusHome() {
+		return customSQLPlusHome;
+	}
+
+	public String getCustomTNSAdmin() {
+		return customTNSAdmin;
+	}
+
+	public String getOracleClient() {
+		return oracleClient;
+	}
+
+	@Override
+	public StepExecution start(StepContext context) throws Exception {
+		return new SQLPlusStepExecution(this, context);
+	}
+
+	@Extension
+	public static class DescriptorImpl extends StepDescriptor {
+
+		private static final String FUNCTION_NAME = "sqlplus";
+
+		@Override
+		public String getFunctionName() {
+			return FUNCTION_NAME;
+		}
+
+		@Override
+		public String getDisplayName() {
+			return Messages.SQLPlusStep_displayName();
+		}
+
+		@Override
+		public Set<? extends Class<?>> getRequiredContext() {
+			Set<Class<?>> context = new HashSet<Class<?>>();
+			Collections.addAll(context, Run.class, FilePath.class, Launcher.class, TaskListener.class,
+					EnvVars.class);
+			return Collections.unmodifiableSet(context);
+		}
+
+		public ListBoxModel doFillCredentialsIdItems(@AncestorInPath ItemGroup<?> context) {
+			return Jenkins.getInstance().getDescriptorByType(SQLPlusRunnerBuilder.DescriptorImpl.class)
+					.doFillCredentialsIdItems(context);
+		}
+
+		public ListBoxModel doFillOracleClientItems() {
+			return Jenkins.getInstance().getDescriptorByType(SQLPlusRunnerBuilder.DescriptorImpl.class)
+					.doFillOracleClientItems();
+		}
+	}
+
+}
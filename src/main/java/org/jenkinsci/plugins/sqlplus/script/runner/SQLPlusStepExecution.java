@@ -0,0 +1,270 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.durabletask.BourneShellScript;
+import org.jenkinsci.plugins.durabletask.Controller;
+import org.jenkinsci.plugins.durabletask.DurableTask;
+import org.jenkinsci.plugins.durabletask.WindowsBatchScript;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+/**
+ * Launches SQL*Plus as a {@link DurableTask} and returns at once. The exit
+ * status and the output are then polled, less and less often while the
+ * script runs, by a timer task; nothing waits on the controller in between.
+ *
+ * Only the node name, the workspace path and the task {@link Controller} are
+ * kept, so the execution resumes polling after a controller restart. The
+ * logon goes through the <code>SQLPLUS_LOGON</code> environment variable, so
+ * the password is not written to the task script.
+ */
+public class SQLPlusStepExecution extends AbstractStepExecutionImpl {
+
+	private static final long serialVersionUID = -3160735851227826154L;
+
+	private static final long MIN_RECURRENCE = 100;
+	private static final long MAX_RECURRENCE = Long.getLong(SQLPlusStepExecution.class.getName() + ".recurrencePeriod",
+			TimeUnit.SECONDS.toMillis(5));
+
+	private static final String ENV_LOGON = "SQLPLUS_LOGON";
+
+	private static final String SQLPLUS_TRY_LOGIN_JUST_ONCE = "-L";
+	private static final String TEMP_SCRIPT_PREFIX = "sqlplus-step-";
+	private static final String SQL_SUFFIX = ".sql";
+	private static final String HIDDEN_PASSWORD = "********";
+	private static final String LOCAL_DATABASE_MSG = "local";
+
+	private final transient SQLPlusStep step;
+
+	private Controller controller;
+
+	private String node;
+
+	private String remote;
+
+	/** script written from the step content, deleted at the end */
+	private String tempScript;
+
+	private long recurrence = MIN_RECURRENCE;
+
+	private volatile boolean done;
+
+	private transient ScheduledFuture<?> task;
+
+	SQLPlusStepExecution(SQLPlusStep step, StepContext context) {
+		super(context);
+		this.step = step;
+	}
+
+	@Override
+	public boolean start() throws Exception {
+
+		FilePath workspace = getContext().get(FilePath.class);
+		Launcher launcher = getContext().get(Launcher.class);
+		TaskListener listener = getContext().get(TaskListener.class);
+		EnvVars env = getContext().get(EnvVars.class);
+
+		StandardUsernamePasswordCredentials credentials = CredentialsCache.find(step.getCredentialsId(),
+				getContext().get(Run.class));
+		if (credentials == null)
+			throw new AbortException(Messages.SQLPlusStep_invalidCredentials(step.getCredentialsId()));
+
+		SQLPlusRunnerBuilder.DescriptorImpl global = Jenkins.getInstance()
+				.getDescriptorByType(SQLPlusRunnerBuilder.DescriptorImpl.class);
+
+		Computer computer = workspace.toComputer();
+		node = computer == null ? "" : computer.getName();
+
+		String oracleClientHome = null;
+		if (step.getOracleClient() != null)
+			oracleClientHome = OracleClientInstallation.getHome(step.getOracleClient(), workspace, env, listener);
+
+		String oracleHome = first(step.getCustomOracleHome(), oracleClientHome, global.getOracleHome(),
+				env.get(LaunchProfile.ENV_ORACLE_HOME));
+		if (oracleHome == null)
+			throw new AbortException(Messages.SQLPlusRunner_missingOracleHome());
+		oracleHome = env.expand(oracleHome);
+		FilePath oracleHomePath = new FilePath(launcher.getChannel(), oracleHome);
+		if (!oracleHomePath.isDirectory())
+			throw new AbortException(Messages.SQLPlusRunner_wrongOracleHome(oracleHome));
+
+		// the same resolution, cached by node, as the build step
+		OracleHomeResolution resolution = OracleHomeCache.resolve(node, oracleHomePath, launcher.isUnix(),
+				oracleHome.equals(oracleClientHome), false, new PhaseTimer());
+		String sqlplus = first(step.getCustomSQLPlusHome(), global.getGlobalSQLPlusHome());
+		if (sqlplus == null && resolution.getSqlplus() == null)
+			throw new AbortException(Messages.SQLPlusRunner_missingSQLPlus());
+		LaunchProfile profile = LaunchProfile.get(node, resolution, sqlplus,
+				first(step.getCustomTNSAdmin(), global.getGlobalTNSAdmin()), launcher.isUnix() ? ":" : ";");
+		if (profile.getTnsAdmin() == null)
+			throw new AbortException(Messages.SQLPlusRunner_missingTNSNAMES());
+
+		FilePath script;
+		if (Util.fixEmpty(step.getScriptContent()) != null) {
+			script = workspace.createTextTempFile(TEMP_SCRIPT_PREFIX, SQL_SUFFIX, env.expand(step.getScriptContent()));
+			tempScript = script.getRemote();
+		} else if (Util.fixEmpty(step.getScript()) != null) {
+			script = workspace.child(env.expand(step.getScript()));
+			if (!script.exists())
+				throw new AbortException(Messages.SQLPlusRunner_missingScript(script.getRemote()));
+		} else {
+			throw new AbortException(Messages.SQLPlusStep_missingScript());
+		}
+		FileUtil.prepareScript(script);
+
+		String instance = Util.fixEmpty(env.expand(step.getInstance()));
+		String logon = credentials.getUsername() + "/" + credentials.getPassword().getPlainText();
+		if (instance != null)
+			logon = logon + "@" + instance;
+
+		EnvVars launchEnv = profile.apply(env);
+		launchEnv.put(ENV_LOGON, logon);
+
+		listener.getLogger().println(Messages.SQLPlusRunner_runningScript() + " " + script.getRemote() + " "
+				+ Messages.SQLPlusRunner_on() + " " + credentials.getUsername() + "/" + HIDDEN_PASSWORD + "@"
+				+ (instance == null ? LOCAL_DATABASE_MSG : instance));
+
+		DurableTask durableTask;
+		if (launcher.isUnix()) {
+			durableTask = new BourneShellScript(quote(profile.getExecutable()) + " " + SQLPLUS_TRY_LOGIN_JUST_ONCE + " \"$" + ENV_LOGON
+					+ "\" @" + quote(script.getRemote()));
+		} else {
+			durableTask = new WindowsBatchScript("\"" + profile.getExecutable() + "\" " + SQLPLUS_TRY_LOGIN_JUST_ONCE + " \"%"
+					+ ENV_LOGON + "%\" @\"" + script.getRemote() + "\"");
+		}
+		controller = durableTask.launch(launchEnv, workspace, launcher, listener);
+
+		remote = workspace.getRemote();
+		schedule();
+		return false;
+	}
+
+	@Override
+	public void onResume() {
+		super.onResume();
+		recurrence = MIN_RECURRENCE;
+		schedule();
+	}
+
+	@Override
+	public void stop(Throwable cause) throws Exception {
+
+		done = true;
+		if (task != null)
+			task.cancel(false);
+		FilePath workspace = getWorkspace();
+		if (workspace != null && controller != null) {
+			TaskListener listener = getContext().get(TaskListener.class);
+			controller.stop(workspace, workspace.createLauncher(listener));
+			cleanup(workspace);
+		}
+		getContext().onFailure(cause);
+	}
+
+	private synchronized void schedule() {
+		if (done)
+			return;
+		task = Timer.get().schedule(new Runnable() {
+			@Override
+			public void run() {
+				check();
+			}
+		}, recurrence, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Copies new output to the build log and completes the step when
+	 * SQL*Plus has exited. An unreachable node is waited for; any other
+	 * failure fails the step, which would otherwise never be checked again.
+	 */
+	private void check() {
+
+		if (done)
+			return;
+		FilePath workspace = getWorkspace();
+		if (workspace == null) {
+			recurrence = MAX_RECURRENCE;
+			schedule();
+			return;
+		}
+		try {
+			TaskListener listener = getContext().get(TaskListener.class);
+			if (controller.writeLog(workspace, listener.getLogger()))
+				recurrence = MIN_RECURRENCE;
+			Integer exitStatus = controller.exitStatus(workspace, workspace.createLauncher(listener));
+			if (exitStatus == null) {
+				recurrence = Math.min(recurrence * 2, MAX_RECURRENCE);
+				schedule();
+				return;
+			}
+
+			controller.writeLog(workspace, listener.getLogger());
+			done = true;
+			cleanup(workspace);
+			listener.getLogger().println(Messages.SQLPlusRunner_processEnd() + " " + exitStatus);
+			if (exitStatus == 0)
+				getContext().onSuccess(exitStatus);
+			else
+				getContext().onFailure(new AbortException(Messages.SQLPlusRunner_processErrorEnd()));
+		} catch (IOException e) {
+			// the node may come back
+			recurrence = MAX_RECURRENCE;
+			schedule();
+		} catch (InterruptedException e) {
+			recurrence = MAX_RECURRENCE;
+			schedule();
+		} catch (RuntimeException e) {
+			done = true;
+			getContext().onFailure(e);
+		}
+	}
+
+	private void cleanup(FilePath workspace) throws IOException, InterruptedException {
+		controller.cleanup(workspace);
+		if (tempScript != null)
+			new FilePath(workspace.getChannel(), tempScript).delete();
+	}
+
+	/**
+	 * @return the workspace, or <code>null</code> while its node is offline
+	 */
+	private FilePath getWorkspace() {
+		Computer computer = Jenkins.getInstance().getComputer(node);
+		if (computer == null)
+			return null;
+		VirtualChannel channel = computer.getChannel();
+		if (channel == null)
+			return null;
+		return new FilePath(channel, remote);
+	}
+
+	private static String first(String... values) {
+		for (String value : values) {
+			if (Util.fixEmptyAndTrim(value) != null)
+				return value.trim();
+		}
+		return null;
+	}
+
+	private static String quote(String path) {
+		return "'" + path.replace("'", "'\\''") + "'";
+	}
+
+}
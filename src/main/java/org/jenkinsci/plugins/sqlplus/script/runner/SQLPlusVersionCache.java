@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import hudson.FilePath;
+
+/**
+ * Output of <code>sqlplus -v</code> per node and SQL*Plus executable, so the
+ * version is probed again only when the executable changes, and the release
+ * last detected on each node, for {@link SQLPlusVersionEnvironment}.
+ *
+ * Nothing is saved: both are dropped by {@link NodeCacheListener} when the
+ * node goes offline.
+ */
+public class SQLPlusVersionCache {
+
+	private static final String SEPARATOR = "|";
+
+	private static final ConcurrentMap<String, String> CACHE = new ConcurrentHashMap<String, String>();
+
+	private static final ConcurrentMap<String, Detected> DETECTED = new ConcurrentHashMap<String, Detected>();
+
+	public static String get(String node, String fingerprint) {
+		return CACHE.get(node + SEPARATOR + fingerprint);
+	}
+
+	public static void put(String node, String fingerprint, String version) {
+		CACHE.put(node + SEPARATOR + fingerprint, version);
+	}
+
+	/**
+	 * Records the release last detected on a node.
+	 */
+	public static void detected(String node, String sqlplus, String release) {
+		if (release != null)
+			DETECTED.put(node, new Detected(sqlplus, release));
+	}
+
+	/**
+	 * @return release last detected on a node, or <code>null</code>
+	 */
+	public static Detected getDetected(String node) {
+		return DETECTED.get(node);
+	}
+
+	public static void invalidateNode(String node) {
+		DETECTED.remove(node);
+		String prefix = node + SEPARATOR;
+		for (Iterator<String> it = CACHE.keySet().iterator(); it.hasNext();) {
+			if (it.next().startsWith(prefix))
+				it.remove();
+		}
+	}
+
+	/**
+	 * @return path, size and modification time of the executable, or
+	 *         <code>null</code> if it does not exist as a file
+	 */
+	public static String fingerprint(FilePath sqlplus) throws IOException, InterruptedException {
+
+		long lastModified = sqlplus.lastModified();
+		if (lastModified == 0)
+			return null;
+		return sqlplus.getRemote() + SEPARATOR + sqlplus.length() + SEPARATOR + lastModified;
+	}
+
+	/**
+	 * @return first non blank line of the <code>sqlplus -v</code> output
+	 */
+	public static String getRelease(String version) {
+
+		if (version == null)
+			return null;
+		for (String line : version.split("\\r?\\n")) {
+			if (line.trim().length() > 0)
+				return line.trim();
+		}
+		return null;
+	}
+
+	public static class Detected {
+
+		private final String executable;
+
+		private final String release;
+
+		Detected(String executable, String release) {
+			this.executable = executable;
+			this.release = release;
+		}
+
+		public String getExecutable() {
+			return executable;
+		}
+
+		public String getRelease() {
+			return release;
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.EnvironmentContributor;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+/**
+ * SQL*Plus version last detected on the node of a build, so other steps can
+ * read it from the <code>SQLPLUS_VERSION</code> environment variable without
+ * launching SQL*Plus.
+ *
+ * The version comes from {@link SQLPlusVersionCache} and is never saved with
+ * the node configuration.
+ */
+@Extension
+public class SQLPlusVersionEnvironment extends EnvironmentContributor {
+
+	public static final String ENV_SQLPLUS_VERSION = "SQLPLUS_VERSION";
+
+	public static final String ENV_SQLPLUS_EXECUTABLE = "SQLPLUS_EXECUTABLE";
+
+	@Override
+	public void buildEnvironmentFor(@SuppressWarnings("rawtypes") Run r, EnvVars envs, TaskListener listener) {
+
+		// only these builds run on a single node
+		if (!(r instanceof AbstractBuild))
+			return;
+		SQLPlusVersionCache.Detected detected = SQLPlusVersionCache.getDetected(((AbstractBuild<?, ?>) r)
+				.getBuiltOnStr());
+		if (detected == null)
+			return;
+		envs.put(ENV_SQLPLUS_VERSION, detected.getRelease());
+		envs.put(ENV_SQLPLUS_EXECUTABLE, detected.getExecutable());
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import hudson.Proc;
+import hudson.Util;
+import hudson.model.Computer;
+
+/**
+ * Waits for a SQL*Plus run until the step deadline. On timeout, or when the
+ * build is aborted, SQL*Plus is first asked to end with <code>EXIT</code> on
+ * its standard input, when it was launched with one, and its process tree is
+ * killed if it still runs after {@link #GRACE_PERIOD} milliseconds. The time
+ * each stage took is printed.
+ *
+ * <code>EXIT</code> is only read when SQL*Plus waits for input, so a session
+ * blocked in a database call, on a lock for instance, is killed.
+ */
+public class SQLPlusWatchdog {
+
+	public static final long GRACE_PERIOD = Long.getLong(SQLPlusWatchdog.class.getName() + ".gracePeriod",
+			TimeUnit.SECONDS.toMillis(10));
+
+	private static final long KILL_WAIT = TimeUnit.SECONDS.toMillis(30);
+	private static final String EXIT = "\nEXIT\n";
+	private static final int KILLED_EXIT_CODE = -1;
+
+	private final long deadline;
+
+	private final PrintStream log;
+
+	private volatile boolean timedOut;
+
+	/**
+	 * @param deadline
+	 *            {@link System#currentTimeMillis()} of the step timeout, or 0
+	 *            for none
+	 */
+	public SQLPlusWatchdog(long deadline, PrintStream log) {
+		this.deadline = deadline;
+		this.log = log;
+	}
+
+	/**
+	 * Waits for <code>run</code>, which ends with SQL*Plus.
+	 *
+	 * @param proc
+	 *            SQL*Plus process
+	 * @param stdin
+	 *            standard input of SQL*Plus, or <code>null</code>
+	 * @return result of <code>run</code>, or the exit code of the stopped
+	 *         process
+	 */
+	public int await(Callable<Integer> run, Proc proc, OutputStream stdin) throws IOException, InterruptedException {
+
+		// waited on another thread, so an abort does not kill SQL*Plus at once
+		Future<Integer> exit = Computer.threadPoolForRemoting.submit(run);
+		try {
+			if (deadline <= 0)
+				return exit.get();
+			return exit.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			timedOut = true;
+			log.println(Messages.SQLPlusWatchdog_timedOut());
+			return stop(exit, proc, stdin);
+		} catch (InterruptedException e) {
+			log.println(Messages.SQLPlusWatchdog_aborted());
+			stop(exit, proc, stdin);
+			throw e;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof InterruptedException)
+				throw (InterruptedException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Writes a script to the standard input of SQL*Plus, leaving it open for
+	 * <code>EXIT</code>. SQL*Plus reads it as it runs, so this blocks until
+	 * the last lines are read, or SQL*Plus ends.
+	 */
+	public static void feed(OutputStream stdin, byte[] script) {
+
+		try {
+			stdin.write(script);
+			stdin.flush();
+		} catch (IOException e) {
+			// SQL*Plus ended first, on a logon error for instance
+		}
+	}
+
+	/**
+	 * @return whether the deadline stopped SQL*Plus
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	private int stop(Future<Integer> exit, Proc proc, OutputStream stdin) throws IOException, InterruptedException {
+
+		try {
+			if (stdin != null) {
+				long exiting = System.currentTimeMillis();
+				try {
+					stdin.write(EXIT.getBytes(StandardCharsets.UTF_8));
+					stdin.flush();
+				} catch (IOException e) {
+					// SQL*Plus closed its input
+				}
+				Integer exitCode = waitFor(exit, GRACE_PERIOD);
+				String elapsed = Util.getTimeSpanString(System.currentTimeMillis() - exiting);
+				if (exitCode != null) {
+					log.println(Messages.SQLPlusWatchdog_exited(elapsed));
+					return exitCode;
+				}
+				log.println(Messages.SQLPlusWatchdog_notExited(elapsed));
+			}
+
+			long killing = System.currentTimeMillis();
+			proc.kill();
+			Integer exitCode = waitFor(exit, KILL_WAIT);
+			log.println(Messages.SQLPlusWatchdog_killed(Util.getTimeSpanString(System.currentTimeMillis() - killing)));
+			return exitCode == null ? KILLED_EXIT_CODE : exitCode;
+		} catch (InterruptedException e) {
+			// aborted again while stopping
+			proc.kill();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return result of the run, {@link #KILLED_EXIT_CODE} if it failed, or
+	 *         <code>null</code> if it did not end in time
+	 */
+	private static Integer waitFor(Future<Integer> exit, long timeout) throws InterruptedException {
+
+		try {
+			return exit.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			return null;
+		} catch (ExecutionException e) {
+			return KILLED_EXIT_CODE;
+		}
+	}
+
+}
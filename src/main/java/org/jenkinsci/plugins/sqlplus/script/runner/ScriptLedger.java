@@ -0,0 +1,182 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+
+/**
+ * Successful script runs, by a SHA-256 of the script content, the instance
+ * and the user, so a script already applied with the same content can be
+ * skipped. Kept in <code>JENKINS_HOME</code>, up to {@link #MAX_ENTRIES}
+ * runs, the oldest ones dropped first. The runs are saved by {@link #save()}
+ * once the step is done, not one by one, so the runs of a step that never
+ * got there are run again by the next build.
+ *
+ * Deleting the file, or changing the script, makes every script run again.
+ */
+public class ScriptLedger {
+
+	private static final Logger LOGGER = Logger.getLogger(ScriptLedger.class.getName());
+
+	public static final int MAX_ENTRIES = Integer.getInteger(ScriptLedger.class.getName() + ".maxEntries", 10000);
+
+	private static final String FILE_NAME = ScriptLedger.class.getName() + ".xml";
+	private static final String SHA_256 = "SHA-256";
+
+	private static ScriptLedger ledger;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	/** whether runs were recorded since the file was written */
+	private transient boolean dirty;
+
+	/**
+	 * @return the ledger, read from its file on first use
+	 */
+	public static synchronized ScriptLedger get() {
+
+		if (ledger == null) {
+			XmlFile file = getFile();
+			if (file.exists()) {
+				try {
+					ledger = (ScriptLedger) file.read();
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Unable to read " + file, e);
+				}
+			}
+			if (ledger == null)
+				ledger = new ScriptLedger();
+		}
+		return ledger;
+	}
+
+	/**
+	 * @return key of a script content on an instance for a user
+	 */
+	public static String key(String contentHash, String instance, String user) {
+		return sha256(contentHash + "\n" + String.valueOf(instance).toUpperCase(Locale.ENGLISH) + "\n"
+				+ String.valueOf(user).toUpperCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Hashes the content of a script on the node that holds it.
+	 */
+	public static String hash(FilePath script) throws IOException, InterruptedException {
+		return FileUtil.sha256(script);
+	}
+
+	/**
+	 * Hashes a script held in memory, as its file would be hashed.
+	 */
+	public static String hash(String content) {
+		return FileUtil.sha256(content);
+	}
+
+	/**
+	 * @return the successful run of a key, or <code>null</code>
+	 */
+	public synchronized Entry find(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Records a successful run, in memory until the next {@link #save()}.
+	 */
+	public synchronized void record(String key, Entry entry) {
+
+		entries.remove(key);
+		entries.put(key, entry);
+		Iterator<Map.Entry<String, Entry>> oldest = entries.entrySet().iterator();
+		while (entries.size() > MAX_ENTRIES && oldest.hasNext()) {
+			oldest.next();
+			oldest.remove();
+		}
+		dirty = true;
+	}
+
+	/**
+	 * Writes the ledger to its file, if runs were recorded since it was last
+	 * written.
+	 */
+	public synchronized void save() {
+
+		if (!dirty)
+			return;
+		try {
+			getFile().write(this);
+			dirty = false;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unable to save " + getFile(), e);
+		}
+	}
+
+	private static XmlFile getFile() {
+		return new XmlFile(new File(Jenkins.getInstance().getRootDir(), FILE_NAME));
+	}
+
+	private static String sha256(String text) {
+		return Util.toHexString(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(SHA_256);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * A successful run.
+	 */
+	public static class Entry {
+
+		private final String script;
+
+		private final String instance;
+
+		private final String build;
+
+		private final long timestamp;
+
+		public Entry(String script, String instance, String build, long timestamp) {
+			this.script = script;
+			this.instance = instance;
+			this.build = build;
+			this.timestamp = timestamp;
+		}
+
+		public String getScript() {
+			return script;
+		}
+
+		public String getInstance() {
+			return instance;
+		}
+
+		/**
+		 * @return display name of the build that ran the script
+		 */
+		public String getBuild() {
+			return build;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Gets a script ready for SQL*Plus on the node that holds it: converts it to
+ * UTF-8 without byte order mark, and appends the exit command when it is
+ * missing. Only a {@link Result} travels back, never the script itself.
+ *
+ * Scripts for a pooled {@link SQLPlusSession} get no exit command, which would
+ * end the session.
+ */
+public class ScriptPreparation extends MasterToSlaveFileCallable<ScriptPreparation.Result> {
+
+	private static final long serialVersionUID = -6514367315230957386L;
+
+	private final boolean addExit;
+
+	public ScriptPreparation() {
+		this(true);
+	}
+
+	public ScriptPreparation(boolean addExit) {
+		this.addExit = addExit;
+	}
+
+	@Override
+	public Result invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+
+		String convertedFrom = FileUtil.normalizeEncoding(f);
+		boolean exitFound = FileUtil.hasExitCode(f);
+		if (!exitFound && addExit)
+			FileUtil.addExitInTheEnd(f);
+		return new Result(f.length(), convertedFrom, exitFound);
+	}
+
+	/**
+	 * What was done to the script.
+	 */
+	public static class Result implements Serializable {
+
+		private static final long serialVersionUID = 3958203659125370254L;
+
+		private final long size;
+
+		private final String convertedFrom;
+
+		private final boolean exitFound;
+
+		public Result(long size, String convertedFrom, boolean exitFound) {
+			this.size = size;
+			this.convertedFrom = convertedFrom;
+			this.exitFound = exitFound;
+		}
+
+		/**
+		 * @return script size in bytes, after preparation
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return encoding the script was converted from, or
+		 *         <code>null</code> if it was left as it was
+		 */
+		public String getConvertedFrom() {
+			return convertedFrom;
+		}
+
+		public boolean isExitFound() {
+			return exitFound;
+		}
+
+		@Override
+		public String toString() {
+			return "size = " + size + ", exit found = " + exitFound
+					+ (convertedFrom == null ? "" : ", converted from " + convertedFrom);
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.Serializable;
+
+import hudson.Util;
+
+/**
+ * Outcome of one SQL*Plus run of a script.
+ */
+public class ScriptResult implements Serializable {
+
+	private static final long serialVersionUID = -2237414796126018457L;
+
+	public enum Status {
+		SUCCESSFUL, FAILED, NOT_RUN, SKIPPED
+	}
+
+	private final String script;
+
+	private final String instance;
+
+	private final int exitCode;
+
+	private final long duration;
+
+	private final String excerpt;
+
+	private final Status status;
+
+	public ScriptResult(String script, String instance, int exitCode, long duration, String excerpt) {
+		this(script, instance, exitCode == 0 ? Status.SUCCESSFUL : Status.FAILED, exitCode, duration, excerpt);
+	}
+
+	public ScriptResult(String script, String instance, Status status, int exitCode, long duration,
+			String excerpt) {
+		this.script = script;
+		this.instance = instance;
+		this.exitCode = exitCode;
+		this.duration = duration;
+		this.excerpt = excerpt;
+		this.status = status;
+	}
+
+	public String getScript() {
+		return script;
+	}
+
+	public String getInstance() {
+		return instance;
+	}
+
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	/**
+	 * @return duration in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public String getDurationString() {
+		return Util.getTimeSpanString(duration);
+	}
+
+	/**
+	 * @return last lines of the SQL*Plus output
+	 */
+	public String getExcerpt() {
+		return excerpt;
+	}
+
+	public Status getStatus() {
+		// results saved before the status was kept
+		if (status == null)
+			return exitCode == 0 ? Status.SUCCESSFUL : Status.FAILED;
+		return status;
+	}
+
+	/**
+	 * @return <code>true</code> for skipped scripts too, as they succeeded
+	 *         before
+	 */
+	public boolean isSuccessful() {
+		return getStatus() == Status.SUCCESSFUL || getStatus() == Status.SKIPPED;
+	}
+
+	/**
+	 * @return whether the script was skipped, as already applied
+	 */
+	public boolean isSkipped() {
+		return getStatus() == Status.SKIPPED;
+	}
+
+	/**
+	 * @return <code>false</code> if the script was never started, because an
+	 *         earlier one stopped the batch, or it was skipped
+	 */
+	public boolean isRun() {
+		return getStatus() != Status.NOT_RUN && getStatus() != Status.SKIPPED;
+	}
+
+}
@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Results of the scripts run by every SQL*Plus Script Runner step of a build
+ * that ran more than one script or instance.
+ */
+public class ScriptResultsAction implements RunAction2 {
+
+	private static final String ICON = "clipboard.png";
+
+	private static final String URL_NAME = "sqlplus";
+
+	private final List<ScriptResult> results = new ArrayList<ScriptResult>();
+
+	private transient Run<?, ?> run;
+
+	/**
+	 * Adds results to the action of the build, creating it on first use.
+	 */
+	public static void add(Run<?, ?> build, List<ScriptResult> results) {
+
+		synchronized (build) {
+			ScriptResultsAction action = build.getAction(ScriptResultsAction.class);
+			if (action == null) {
+				action = new ScriptResultsAction();
+				build.addAction(action);
+			}
+			synchronized (action.results) {
+				action.results.addAll(results);
+			}
+		}
+	}
+
+	public List<ScriptResult> getResults() {
+		synchronized (results) {
+			return Collections.unmodifiableList(new ArrayList<ScriptResult>(results));
+		}
+	}
+
+	public int getFailedCount() {
+		int failed = 0;
+		for (ScriptResult result : getResults()) {
+			if (!result.isSuccessful())
+				failed++;
+		}
+		return failed;
+	}
+
+	public Run<?, ?> getRun() {
+		return run;
+	}
+
+	@Override
+	public void onAttached(Run<?, ?> r) {
+		this.run = r;
+	}
+
+	@Override
+	public void onLoad(Run<?, ?> r) {
+		this.run = r;
+	}
+
+	@Override
+	public String getIconFileName() {
+		return ICON;
+	}
+
+	@Override
+	public String getDisplayName() {
+		return Messages.ScriptResultsAction_displayName();
+	}
+
+	@Override
+	public String getUrlName() {
+		return URL_NAME;
+	}
+
+}
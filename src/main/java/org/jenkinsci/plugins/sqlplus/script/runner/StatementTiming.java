@@ -0,0 +1,86 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.Serializable;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import hudson.Util;
+
+/**
+ * Time taken by one statement of a script, from the SQL*Plus
+ * <code>Elapsed:</code> lines.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class StatementTiming implements Serializable {
+
+	private static final long serialVersionUID = 6082436563171581036L;
+
+	private final String script;
+
+	private final String instance;
+
+	private final int line;
+
+	private final String statement;
+
+	private final long elapsed;
+
+	private final long rows;
+
+	public StatementTiming(String script, String instance, int line, String statement, long elapsed, long rows) {
+		this.script = script;
+		this.instance = instance;
+		this.line = line;
+		this.statement = statement;
+		this.elapsed = elapsed;
+		this.rows = rows;
+	}
+
+	@Exported
+	public String getScript() {
+		return script;
+	}
+
+	@Exported
+	public String getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return line of the script where the statement starts
+	 */
+	@Exported
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return beginning of the statement
+	 */
+	@Exported
+	public String getStatement() {
+		return statement;
+	}
+
+	/**
+	 * @return elapsed time in milliseconds
+	 */
+	@Exported
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public String getElapsedString() {
+		return Util.getTimeSpanString(elapsed);
+	}
+
+	/**
+	 * @return rows reported by SQL*Plus, or -1 if it reported none
+	 */
+	@Exported
+	public long getRows() {
+		return rows;
+	}
+
+}
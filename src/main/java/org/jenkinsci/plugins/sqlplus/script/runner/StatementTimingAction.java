@@ -0,0 +1,99 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import hudson.model.Api;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Time taken by each statement of the scripts of a build, for the steps run
+ * with statement timing. Also served as JSON from its <code>api/json</code>
+ * page.
+ */
+@ExportedBean
+public class StatementTimingAction implements RunAction2 {
+
+	private static final String ICON = "clock.png";
+
+	private static final String URL_NAME = "sqlplus-timing";
+
+	private final List<StatementTiming> timings = new ArrayList<StatementTiming>();
+
+	private transient Run<?, ?> run;
+
+	/**
+	 * Adds timings to the action of the build, creating it on first use.
+	 */
+	public static void add(Run<?, ?> build, List<StatementTiming> timings) {
+
+		synchronized (build) {
+			StatementTimingAction action = build.getAction(StatementTimingAction.class);
+			if (action == null) {
+				action = new StatementTimingAction();
+				build.addAction(action);
+			}
+			synchronized (action.timings) {
+				action.timings.addAll(timings);
+			}
+		}
+	}
+
+	@Exported(inline = true)
+	public List<StatementTiming> getTimings() {
+		synchronized (timings) {
+			return Collections.unmodifiableList(new ArrayList<StatementTiming>(timings));
+		}
+	}
+
+	/**
+	 * @return total elapsed time in milliseconds
+	 */
+	@Exported
+	public long getElapsed() {
+		long elapsed = 0;
+		for (StatementTiming timing : getTimings()) {
+			elapsed += timing.getElapsed();
+		}
+		return elapsed;
+	}
+
+	public Api getApi() {
+		return new Api(this);
+	}
+
+	public Run<?, ?> getRun() {
+		return run;
+	}
+
+	@Override
+	public void onAttached(Run<?, ?> r) {
+		this.run = r;
+	}
+
+	@Override
+	public void onLoad(Run<?, ?> r) {
+		this.run = r;
+	}
+
+	@Override
+	public String getIconFileName() {
+		return ICON;
+	}
+
+	@Override
+	public String getDisplayName() {
+		return Messages.StatementTimingAction_displayName();
+	}
+
+	@Override
+	public String getUrlName() {
+		return URL_NAME;
+	}
+
+}
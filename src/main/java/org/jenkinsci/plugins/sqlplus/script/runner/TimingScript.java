@@ -0,0 +1,320 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import hudson.FilePath;
+import hudson.console.LineTransformationOutputStream;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Copy of a script with <code>SET TIMING ON</code> and a <code>PROMPT</code>
+ * marker before each statement, so the <code>Elapsed:</code> and row count
+ * lines in the output can be matched to the statement that printed them.
+ *
+ * Statements run by scripts called with <code>@</code> count for the line
+ * calling them. Row counts are read from the English SQL*Plus feedback.
+ */
+public class TimingScript {
+
+	private static final String MARKER_PREFIX = "JENKINS-SQLPLUS-TIMING-";
+	private static final String COPY_SUFFIX = ".sql";
+	private static final int SNIPPET_LENGTH = 120;
+
+	private static final Pattern ELAPSED = Pattern.compile("^Elapsed:\\s+(\\d+):(\\d+):(\\d+)[.,](\\d+)");
+	private static final Pattern ROWS = Pattern.compile(
+			"^(\\d+|no) rows? (selected|created|updated|deleted|merged|inserted)\\b", Pattern.CASE_INSENSITIVE);
+	private static final Pattern PASSWORD = Pattern.compile("(?i)(identified\\s+by\\s+|conn(ect)?\\s+[^/\\s]+/)\\S+");
+
+	/** SQL*Plus commands, which take one line unless it ends with - */
+	private static final Set<String> COMMANDS = new HashSet<String>(Arrays.asList("@", "@@", "ACC", "ACCEPT",
+			"APPEND", "ARCHIVE", "ATTRIBUTE", "BRE", "BREAK", "BTI", "BTITLE", "CHANGE", "CL", "CLEAR", "COL",
+			"COLUMN", "COMP", "COMPUTE", "CONN", "CONNECT", "COPY", "DEF", "DEFINE", "DEL", "DESC", "DESCRIBE",
+			"DISC", "DISCONNECT", "EXEC", "EXECUTE", "EXIT", "GET", "HELP", "HO", "HOST", "INPUT", "LIST", "PASSW",
+			"PASSWORD", "PAU", "PAUSE", "PRI", "PRINT", "PRO", "PROMPT", "QUIT", "R", "RUN", "SAV", "SAVE", "SET",
+			"SHO", "SHOW", "SPO", "SPOOL", "STA", "START", "STORE", "TIMI", "TIMING", "TTI", "TTITLE", "UNDEF",
+			"UNDEFINE", "VAR", "VARIABLE", "WHENEVER", "XQUERY"));
+
+	/** statements ended by a line with / */
+	private static final Pattern PLSQL = Pattern.compile("^(DECLARE|BEGIN|CREATE\\s+(OR\\s+REPLACE\\s+)?"
+			+ "((NON)?EDITIONABLE\\s+)?(PROCEDURE|FUNCTION|PACKAGE|TRIGGER|TYPE|LIBRARY|JAVA))\\b.*");
+
+	private final FilePath script;
+
+	private final String marker;
+
+	private final Statements statements;
+
+	private final long[] elapsed;
+
+	private final long[] rows;
+
+	private final boolean[] timed;
+
+	private TimingScript(FilePath script, String marker, Statements statements) {
+		this.script = script;
+		this.marker = marker;
+		this.statements = statements;
+		this.elapsed = new long[statements.lines.size()];
+		this.rows = new long[statements.lines.size()];
+		this.timed = new boolean[statements.lines.size()];
+		Arrays.fill(rows, -1);
+	}
+
+	/**
+	 * Writes the instrumented copy next to the script, on its node.
+	 */
+	public static TimingScript instrument(FilePath script) throws IOException, InterruptedException {
+
+		String marker = MARKER_PREFIX + UUID.randomUUID();
+		Statements statements = script.act(new Instrument(marker));
+		return new TimingScript(new FilePath(script.getChannel(), statements.copy), marker, statements);
+	}
+
+	/**
+	 * @return the instrumented copy, to run instead of the script
+	 */
+	public FilePath getScript() {
+		return script;
+	}
+
+	/**
+	 * @return stream for the SQL*Plus output, copying it to <code>out</code>
+	 *         without the markers
+	 */
+	public OutputStream parse(OutputStream out) {
+		return new Output(out);
+	}
+
+	/**
+	 * Timing of the statements that printed an elapsed time or a row count.
+	 */
+	public List<StatementTiming> getTimings(String scriptName, String instance) {
+
+		List<StatementTiming> timings = new ArrayList<StatementTiming>();
+		for (int i = 0; i < timed.length; i++) {
+			if (timed[i] || rows[i] >= 0)
+				timings.add(new StatementTiming(scriptName, instance, statements.lines.get(i),
+						statements.texts.get(i), elapsed[i], rows[i]));
+		}
+		return timings;
+	}
+
+	/**
+	 * Statement start lines of a script, found line by line as SQL*Plus reads
+	 * it: SQL ends with ; or a / line, PL/SQL with a / line, and SQL*Plus
+	 * commands at the end of the line.
+	 */
+	public static List<Integer> findStatements(List<String> script, List<String> texts) {
+
+		List<Integer> starts = new ArrayList<Integer>();
+		boolean inSql = false;
+		boolean inPlsql = false;
+		boolean inCommand = false;
+		boolean inComment = false;
+		for (int n = 0; n < script.size(); n++) {
+			String line = script.get(n).trim();
+			String upper = line.toUpperCase(Locale.ENGLISH);
+
+			if (inComment) {
+				inComment = !line.contains("*/");
+			} else if (inPlsql) {
+				inPlsql = !line.equals("/") && !line.equals(".");
+			} else if (inSql) {
+				// blank lines may belong to the statement with SQLBLANKLINES ON
+				inSql = !line.endsWith(";") && !line.equals("/");
+			} else if (inCommand) {
+				inCommand = line.endsWith("-");
+			} else if (line.length() == 0 || line.startsWith("--") || upper.startsWith("REM ") || upper.equals("REM")) {
+				// not a statement
+			} else if (line.startsWith("/*")) {
+				inComment = !line.contains("*/");
+			} else {
+				starts.add(n);
+				texts.add(snippet(line));
+				String command = upper.startsWith("@@") ? "@@" : upper.startsWith("@") ? "@" : upper.split("\\s+")[0];
+				if (line.equals("/")) {
+					// runs the buffer again
+				} else if (PLSQL.matcher(upper).matches()) {
+					inPlsql = true;
+				} else if (COMMANDS.contains(command)) {
+					inCommand = line.endsWith("-");
+				} else {
+					inSql = !line.endsWith(";");
+				}
+			}
+		}
+		return starts;
+	}
+
+	private static String snippet(String line) {
+		String text = PASSWORD.matcher(line).replaceAll("$1********");
+		return text.length() > SNIPPET_LENGTH ? text.substring(0, SNIPPET_LENGTH) + "..." : text;
+	}
+
+	/**
+	 * @return elapsed time of an <code>Elapsed: hh:mm:ss.cc</code> line in
+	 *         milliseconds, or -1 for other lines
+	 */
+	public static long parseElapsed(String line) {
+
+		Matcher matcher = ELAPSED.matcher(line);
+		if (!matcher.find())
+			return -1;
+		String fraction = (matcher.group(4) + "000").substring(0, 3);
+		return ((Long.parseLong(matcher.group(1)) * 60 + Long.parseLong(matcher.group(2))) * 60
+				+ Long.parseLong(matcher.group(3))) * 1000 + Long.parseLong(fraction);
+	}
+
+	/**
+	 * @return rows of a feedback line like <code>3 rows updated.</code>, or -1
+	 *         for other lines
+	 */
+	public static long parseRows(String line) {
+
+		Matcher matcher = ROWS.matcher(line);
+		if (!matcher.find())
+			return -1;
+		return "no".equalsIgnoreCase(matcher.group(1)) ? 0 : Long.parseLong(matcher.group(1));
+	}
+
+	/**
+	 * Statement lines and texts, and the path of the copy on the node.
+	 */
+	static class Statements implements Serializable {
+
+		private static final long serialVersionUID = -7302880617291402458L;
+
+		private final String copy;
+
+		private final List<Integer> lines;
+
+		private final List<String> texts;
+
+		Statements(String copy, List<Integer> lines, List<String> texts) {
+			this.copy = copy;
+			this.lines = lines;
+			this.texts = texts;
+		}
+	}
+
+	private static class Instrument extends MasterToSlaveFileCallable<Statements> {
+
+		private static final long serialVersionUID = 2209338271364367417L;
+
+		private final String marker;
+
+		Instrument(String marker) {
+			this.marker = marker;
+		}
+
+		@Override
+		public Statements invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+
+			List<String> script = new ArrayList<String>();
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null)
+					script.add(line);
+			} finally {
+				reader.close();
+			}
+
+			List<String> texts = new ArrayList<String>();
+			List<Integer> starts = findStatements(script, texts);
+
+			// same directory, so @@ finds the same scripts
+			File copy = File.createTempFile(f.getName() + ".", COPY_SUFFIX, f.getAbsoluteFile().getParentFile());
+			BufferedWriter writer = new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(copy), StandardCharsets.UTF_8));
+			try {
+				writer.write("SET TIMING ON");
+				writer.newLine();
+				int next = 0;
+				for (int n = 0; n < script.size(); n++) {
+					if (next < starts.size() && starts.get(next) == n) {
+						writer.write("PROMPT " + marker + " " + next);
+						writer.newLine();
+						next++;
+					}
+					writer.write(script.get(n));
+					writer.newLine();
+				}
+			} finally {
+				writer.close();
+			}
+
+			List<Integer> lines = new ArrayList<Integer>();
+			for (Integer start : starts) {
+				lines.add(start + 1);
+			}
+			return new Statements(copy.getAbsolutePath(), lines, texts);
+		}
+	}
+
+	private class Output extends LineTransformationOutputStream {
+
+		private final OutputStream out;
+
+		private int current = -1;
+
+		Output(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		protected void eol(byte[] b, int len) throws IOException {
+
+			String line = trimEOL(new String(b, 0, len, StandardCharsets.UTF_8)).trim();
+			if (line.startsWith(marker)) {
+				current = Integer.parseInt(line.substring(marker.length()).trim());
+				return;
+			}
+			out.write(b, 0, len);
+			if (current < 0)
+				return;
+
+			long time = parseElapsed(line);
+			if (time >= 0) {
+				elapsed[current] += time;
+				timed[current] = true;
+			}
+			long count = parseRows(line);
+			if (count >= 0)
+				rows[current] = Math.max(rows[current], 0) + count;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			forceEol();
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,405 @@
+package org.jenkinsci.plugins.sqlplus.script.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * The net service names of a TNS_ADMIN directory, read from its TNSNAMES.ORA
+ * and the files it includes with <code>IFILE</code>.
+ *
+ * Names without a domain are also looked up with the
+ * <code>NAMES.DEFAULT_DOMAIN</code> of SQLNET.ORA.
+ *
+ * Files are parsed on the node holding them, and kept there by directory
+ * until one of them is changed, so an alias is checked without starting
+ * SQL*Plus.
+ */
+public class TnsNames implements Serializable {
+
+	private static final long serialVersionUID = 7381265120547293870L;
+
+	public static final String TNSNAMES_ORA = "tnsnames.ora";
+	public static final String SQLNET_ORA = "sqlnet.ora";
+	public static final String LDAP_ORA = "ldap.ora";
+
+	private static final String IFILE = "IFILE";
+	private static final String TNSNAMES = "TNSNAMES";
+	private static final String EZCONNECT = "EZCONNECT";
+
+	private static final Pattern ALIAS = Pattern.compile("[A-Za-z][\\w.$#-]*");
+	private static final Pattern HOST_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9-]*(\\.[A-Za-z0-9][A-Za-z0-9-]*)*");
+	private static final Pattern DEFAULT_DOMAIN = Pattern.compile("^\\s*NAMES\\.DEFAULT_DOMAIN\\s*=\\s*([^\\s]+)",
+			Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+	private static final Pattern DIRECTORY_PATH = Pattern.compile(
+			"^\\s*NAMES\\.DIRECTORY_PATH\\s*=\\s*\\(?([^)\\r\\n]*)\\)?", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+	private static final Pattern HOST = Pattern.compile("\\(\\s*HOST\\s*=\\s*([^)\\s]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern PORT = Pattern.compile("\\(\\s*PORT\\s*=\\s*([^)\\s]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SERVICE = Pattern
+			.compile("\\(\\s*(?:SERVICE_NAME|SID)\\s*=\\s*([^)\\s]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** parsed names by TNS_ADMIN path, on the node holding it */
+	private static final ConcurrentMap<String, TnsNames> CACHE = new ConcurrentHashMap<String, TnsNames>();
+
+	private final String file;
+
+	private final Map<String, String> descriptors;
+
+	private final boolean complete;
+
+	private final String defaultDomain;
+
+	private final boolean ezConnect;
+
+	/** modification time of every file read, to know when to read again */
+	private final transient Map<String, Long> lastModified;
+
+	TnsNames(String file, Map<String, String> descriptors, boolean complete, String defaultDomain, boolean ezConnect,
+			Map<String, Long> lastModified) {
+		this.file = file;
+		this.descriptors = Collections.unmodifiableMap(descriptors);
+		this.complete = complete;
+		this.defaultDomain = defaultDomain;
+		this.ezConnect = ezConnect;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Reads the names of a TNS_ADMIN directory on its node, or gets them from
+	 * the cache if no file changed.
+	 */
+	public static TnsNames load(FilePath tnsAdmin) throws IOException, InterruptedException {
+		return tnsAdmin.act(new Load());
+	}
+
+	/**
+	 * @return TNSNAMES.ORA path, or <code>null</code> if the directory has
+	 *         none
+	 */
+	public String getFile() {
+		return file;
+	}
+
+	/**
+	 * @return aliases in upper case, sorted
+	 */
+	public Set<String> getAliases() {
+		return descriptors.keySet();
+	}
+
+	/**
+	 * @return connect descriptor of an alias, or of the alias in the default
+	 *         domain when it has none, or <code>null</code>
+	 */
+	public String getDescriptor(String alias) {
+
+		String name = alias.toUpperCase(Locale.ENGLISH);
+		String descriptor = descriptors.get(name);
+		if (descriptor == null && defaultDomain != null && name.indexOf('.') < 0)
+			descriptor = descriptors.get(name + '.' + defaultDomain);
+		return descriptor;
+	}
+
+	/**
+	 * @return <code>NAMES.DEFAULT_DOMAIN</code> in upper case, or
+	 *         <code>null</code>
+	 */
+	public String getDefaultDomain() {
+		return defaultDomain;
+	}
+
+	/**
+	 * @return whether SQL*Plus also takes a name as an EZConnect host, which
+	 *         it does unless SQLNET.ORA leaves EZCONNECT out
+	 */
+	public boolean isEzConnect() {
+		return ezConnect;
+	}
+
+	/**
+	 * @return whether an alias missing here cannot be resolved: there is a
+	 *         TNSNAMES.ORA, no LDAP.ORA, and SQLNET.ORA does not name another
+	 *         naming method
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return whether an instance is a net service name, not an EZConnect
+	 *         string or a connect descriptor
+	 */
+	public static boolean isAlias(String instance) {
+		return instance != null && ALIAS.matcher(instance).matches();
+	}
+
+	/**
+	 * @return whether an instance may be a host name, for EZConnect to use
+	 *         with the default port and service
+	 */
+	public static boolean isHostName(String instance) {
+		return instance != null && HOST_NAME.matcher(instance).matches();
+	}
+
+	/**
+	 * Looks a host name up on the node of <code>channel</code>, or here when
+	 * it is <code>null</code>, without connecting to it.
+	 *
+	 * @return whether the name resolves to an address
+	 */
+	public static boolean resolvesHost(VirtualChannel channel, String host) throws IOException, InterruptedException {
+
+		ResolveHost resolve = new ResolveHost(host);
+		return channel == null ? resolve.call() : channel.call(resolve);
+	}
+
+	/**
+	 * @return host, port and service of the first address of a connect
+	 *         descriptor, as <code>host:port/service</code>
+	 */
+	public static String describe(String descriptor) {
+
+		StringBuilder description = new StringBuilder(find(HOST, descriptor));
+		String port = find(PORT, descriptor);
+		if (port.length() > 0)
+			description.append(':').append(port);
+		return description.append('/').append(find(SERVICE, descriptor)).toString();
+	}
+
+	private static String find(Pattern pattern, String descriptor) {
+		Matcher matcher = pattern.matcher(descriptor);
+		return matcher.find() ? matcher.group(1) : "";
+	}
+
+	/**
+	 * Parses TNSNAMES.ORA content into connect descriptors by alias.
+	 *
+	 * @param includes
+	 *            receives the <code>IFILE</code> paths, in order
+	 */
+	public static Map<String, String> parse(String content, List<String> includes) {
+
+		Map<String, String> descriptors = new LinkedHashMap<String, String>();
+		String text = content.replaceAll("#[^\\r\\n]*", "");
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			int equals = text.indexOf('=', i);
+			if (equals < 0)
+				break;
+			String names = text.substring(i, equals).trim();
+			i = equals + 1;
+			while (i < length && Character.isWhitespace(text.charAt(i)))
+				i++;
+
+			String value;
+			if (i < length && text.charAt(i) == '(') {
+				int start = i;
+				int depth = 0;
+				do {
+					char c = text.charAt(i++);
+					if (c == '(')
+						depth++;
+					else if (c == ')')
+						depth--;
+				} while (depth > 0 && i < length);
+				value = text.substring(start, i);
+			} else {
+				int start = i;
+				while (i < length && text.charAt(i) != '\n' && text.charAt(i) != '\r')
+					i++;
+				value = text.substring(start, i).trim();
+			}
+
+			if (IFILE.equalsIgnoreCase(names)) {
+				includes.add(unquote(value));
+				continue;
+			}
+			for (String name : names.split(",")) {
+				name = name.trim();
+				if (isAlias(name))
+					descriptors.put(name.toUpperCase(Locale.ENGLISH), value.replaceAll("\\s+", ""));
+			}
+		}
+		return descriptors;
+	}
+
+	private static String unquote(String value) {
+		if (value.length() > 1 && (value.startsWith("\"") || value.startsWith("'")))
+			return value.substring(1, value.length() - 1);
+		return value;
+	}
+
+	/**
+	 * @return whether the <code>NAMES.DIRECTORY_PATH</code> of SQLNET.ORA
+	 *         content resolves names with TNSNAMES.ORA only, EZConnect aside
+	 */
+	public static boolean isTnsNamesOnly(String sqlnet) {
+
+		String[] methods = getDirectoryPath(sqlnet);
+		if (methods == null)
+			return true;
+		boolean tnsnames = false;
+		for (String method : methods) {
+			if (TNSNAMES.equals(method))
+				tnsnames = true;
+			else if (!method.startsWith(EZCONNECT) && method.length() > 0)
+				return false;
+		}
+		return tnsnames;
+	}
+
+	/**
+	 * @return whether the <code>NAMES.DIRECTORY_PATH</code> of SQLNET.ORA
+	 *         content lists EZCONNECT, as the default one does
+	 */
+	public static boolean usesEzConnect(String sqlnet) {
+
+		String[] methods = getDirectoryPath(sqlnet);
+		if (methods == null)
+			return true;
+		for (String method : methods) {
+			if (method.startsWith(EZCONNECT))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return <code>NAMES.DEFAULT_DOMAIN</code> of SQLNET.ORA content in upper
+	 *         case, or <code>null</code>
+	 */
+	public static String getDefaultDomain(String sqlnet) {
+
+		Matcher matcher = DEFAULT_DOMAIN.matcher(sqlnet.replaceAll("#[^\\r\\n]*", ""));
+		if (!matcher.find())
+			return null;
+		String domain = matcher.group(1).replaceFirst("^\\.", "").toUpperCase(Locale.ENGLISH);
+		return domain.length() > 0 ? domain : null;
+	}
+
+	/**
+	 * @return naming methods in upper case, or <code>null</code> if SQLNET.ORA
+	 *         content does not set them
+	 */
+	private static String[] getDirectoryPath(String sqlnet) {
+
+		Matcher matcher = DIRECTORY_PATH.matcher(sqlnet.replaceAll("#[^\\r\\n]*", ""));
+		if (!matcher.find())
+			return null;
+		String[] methods = matcher.group(1).split(",");
+		for (int i = 0; i < methods.length; i++) {
+			methods[i] = methods[i].trim().toUpperCase(Locale.ENGLISH);
+		}
+		return methods;
+	}
+
+	private boolean isCurrent() {
+		for (Map.Entry<String, Long> entry : lastModified.entrySet()) {
+			if (new File(entry.getKey()).lastModified() != entry.getValue())
+				return false;
+		}
+		return true;
+	}
+
+	private static class ResolveHost extends MasterToSlaveCallable<Boolean, IOException> {
+
+		private static final long serialVersionUID = 6303424855130594706L;
+
+		private final String host;
+
+		ResolveHost(String host) {
+			this.host = host;
+		}
+
+		@Override
+		public Boolean call() {
+			try {
+				InetAddress.getByName(host);
+				return true;
+			} catch (UnknownHostException e) {
+				return false;
+			}
+		}
+	}
+
+	private static class Load extends MasterToSlaveFileCallable<TnsNames> {
+
+		private static final long serialVersionUID = -4168843920674521935L;
+
+		@Override
+		public TnsNames invoke(File f, VirtualChannel channel) throws IOException {
+
+			String key = f.getAbsolutePath();
+			TnsNames names = CACHE.get(key);
+			if (names != null && names.isCurrent())
+				return names;
+
+			Map<String, Long> lastModified = new LinkedHashMap<String, Long>();
+			File tnsnames = new File(f, TNSNAMES_ORA);
+			File sqlnet = new File(f, SQLNET_ORA);
+			lastModified.put(tnsnames.getAbsolutePath(), tnsnames.lastModified());
+			lastModified.put(sqlnet.getAbsolutePath(), sqlnet.lastModified());
+			File ldap = new File(f, LDAP_ORA);
+			lastModified.put(ldap.getAbsolutePath(), ldap.lastModified());
+
+			Map<String, String> descriptors = new TreeMap<String, String>();
+			read(tnsnames, descriptors, lastModified, new HashSet<String>());
+			String sqlnetContent = sqlnet.isFile() ? readFile(sqlnet) : "";
+			boolean complete = tnsnames.isFile() && !ldap.isFile() && isTnsNamesOnly(sqlnetContent);
+
+			names = new TnsNames(tnsnames.isFile() ? tnsnames.getAbsolutePath() : null, descriptors, complete,
+					getDefaultDomain(sqlnetContent), usesEzConnect(sqlnetContent), lastModified);
+			CACHE.put(key, names);
+			return names;
+		}
+
+		private static void read(File file, Map<String, String> descriptors, Map<String, Long> lastModified,
+				Set<String> visited) throws IOException {
+
+			if (!file.isFile() || !visited.add(file.getCanonicalPath()))
+				return;
+			lastModified.put(file.getAbsolutePath(), file.lastModified());
+
+			List<String> includes = new ArrayList<String>();
+			// names defined in a file win over the ones it includes
+			Map<String, String> own = parse(readFile(file), includes);
+			for (String include : includes) {
+				File included = new File(include);
+				if (!included.isAbsolute())
+					included = new File(file.getParentFile(), include);
+				read(included, descriptors, lastModified, visited);
+			}
+			descriptors.putAll(own);
+		}
+
+		private static String readFile(File file) throws IOException {
+			return new String(Files.readAllBytes(file.toPath()), CHARSET);
+		}
+	}
+
+}
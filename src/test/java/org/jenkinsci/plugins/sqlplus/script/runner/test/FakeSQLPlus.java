@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Stand-in ORACLE_HOME with a shell script as SQL*Plus, for measuring the
+ * plugin without a database. The script prints the usual banners, reads the
+ * script passed with <code>@</code>, or its standard input without one, waits
+ * and exits with a fixed code. Each run can be logged to a file, to check
+ * how many ran at the same time.
+ */
+public class FakeSQLPlus {
+
+	private static final String EOL = "\n";
+	private static final String BIN_DIR = "bin";
+	private static final String LIB_DIR = "lib";
+	private static final String NET_DIR = "network" + File.separator + "admin";
+	private static final String SQLPLUS = "sqlplus";
+	private static final String TNSNAMES_ORA = "tnsnames.ora";
+
+	private static final String RELEASE = "12.2.0.1.0";
+
+	/** net service names of the TNSNAMES.ORA */
+	public static final String[] ALIASES = { "ORA", "ORA1", "ORA2", "ORA3" };
+
+	/**
+	 * {@link #install(File, int, long, File)} without a log of the runs.
+	 */
+	public static File install(File oracleHome, int exitCode, long delay) throws IOException {
+		return install(oracleHome, exitCode, delay, null);
+	}
+
+	/**
+	 * Creates the ORACLE_HOME layout below <code>oracleHome</code>.
+	 *
+	 * @param exitCode
+	 *            exit code of every run
+	 * @param delay
+	 *            milliseconds each run waits after reading the script
+	 * @param runs
+	 *            file where each run appends <code>start</code> and
+	 *            <code>end</code> lines with its instance and script, or
+	 *            <code>null</code>
+	 * @return the fake SQL*Plus executable
+	 */
+	public static File install(File oracleHome, int exitCode, long delay, File runs) throws IOException {
+
+		File bin = new File(oracleHome, BIN_DIR);
+		File net = new File(oracleHome, NET_DIR);
+		bin.mkdirs();
+		net.mkdirs();
+		new File(oracleHome, LIB_DIR).mkdirs();
+
+		StringBuilder tnsnames = new StringBuilder();
+		for (String alias : ALIASES) {
+			tnsnames.append(alias).append(" = (DESCRIPTION = (ADDRESS = (PROTOCOL = TCP)(HOST = localhost)(PORT = 1521))")
+					.append(" (CONNECT_DATA = (SERVICE_NAME = ").append(alias).append(")))").append(EOL);
+		}
+		Files.write(new File(net, TNSNAMES_ORA).toPath(), tnsnames.toString().getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder script = new StringBuilder();
+		script.append("#!/bin/sh").append(EOL);
+		script.append("if [ \"$1\" = \"-v\" ]; then").append(EOL);
+		script.append("  echo").append(EOL);
+		script.append("  echo \"SQL*Plus: Release " + RELEASE + " Production\"").append(EOL);
+		script.append("  echo").append(EOL);
+		script.append("  exit 0").append(EOL);
+		script.append("fi").append(EOL);
+		script.append("echo").append(EOL);
+		script.append("echo \"SQL*Plus: Release " + RELEASE + " Production\"").append(EOL);
+		script.append("echo").append(EOL);
+		script.append("echo \"Copyright (c) 1982, 2016, Oracle.  All rights reserved.\"").append(EOL);
+		script.append("echo").append(EOL);
+		script.append("echo \"Connected to:\"").append(EOL);
+		script.append("echo \"Oracle Database 12c Enterprise Edition Release " + RELEASE + " - 64bit Production\"")
+				.append(EOL);
+		script.append("file=").append(EOL);
+		script.append("instance=local").append(EOL);
+		script.append("for arg in \"$@\"; do").append(EOL);
+		script.append("  case \"$arg\" in").append(EOL);
+		script.append("    @*) file=\"${arg#@}\"; [ -f \"$file\" ] || file=\"$file.sql\";"
+				+ " [ -f \"$file\" ] && cat \"$file\" > /dev/null ;;").append(EOL);
+		script.append("    */*@*) instance=\"${arg##*@}\" ;;").append(EOL);
+		script.append("  esac").append(EOL);
+		script.append("done").append(EOL);
+		script.append("[ -n \"$file\" ] || cat > /dev/null").append(EOL);
+		if (runs != null)
+			script.append("echo \"start $instance $file\" >> '" + runs.getAbsolutePath() + "'").append(EOL);
+		if (delay > 0)
+			script.append("sleep " + String.format(Locale.ENGLISH, "%.3f", delay / 1000.0)).append(EOL);
+		script.append("echo").append(EOL);
+		script.append("echo \"Disconnected from Oracle Database 12c Enterprise Edition Release " + RELEASE
+				+ " - 64bit Production\"").append(EOL);
+		if (runs != null)
+			script.append("echo \"end $instance $file\" >> '" + runs.getAbsolutePath() + "'").append(EOL);
+		script.append("exit " + exitCode).append(EOL);
+
+		File sqlplus = new File(bin, SQLPLUS);
+		Files.write(sqlplus.toPath(), script.toString().getBytes(StandardCharsets.UTF_8));
+		sqlplus.setExecutable(true);
+		return sqlplus;
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
+import hudson.Proc;
+
+/**
+ * Shell command as a {@link Proc}, with its standard input and output open.
+ */
+class LocalProc extends Proc {
+
+	private final Process process;
+
+	volatile boolean killed;
+
+	LocalProc(String command) throws IOException {
+		process = new ProcessBuilder("sh", "-c", command).start();
+	}
+
+	Callable<Integer> joining() {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return join();
+			}
+		};
+	}
+
+	@Override
+	public boolean isAlive() {
+		return process.isAlive();
+	}
+
+	@Override
+	public void kill() {
+		killed = true;
+		process.destroy();
+	}
+
+	@Override
+	public int join() throws InterruptedException {
+		return process.waitFor();
+	}
+
+	@Override
+	public InputStream getStdout() {
+		return process.getInputStream();
+	}
+
+	@Override
+	public InputStream getStderr() {
+		return process.getErrorStream();
+	}
+
+	@Override
+	public OutputStream getStdin() {
+		return process.getOutputStream();
+	}
+
+}
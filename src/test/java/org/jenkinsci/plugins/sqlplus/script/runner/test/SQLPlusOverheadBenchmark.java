@@ -0,0 +1,231 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.PhaseTimer;
+import org.jenkinsci.plugins.sqlplus.script.runner.PhaseTimingAction;
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusRunnerBuilder;
+import org.jenkinsci.plugins.sqlplus.script.runner.ScriptType;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Node;
+import hudson.model.Result;
+import hudson.slaves.DumbSlave;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.RetentionStrategy;
+
+/**
+ * Plugin overhead per build, controller CPU and allocation, and throughput
+ * of concurrent builds, running the builder against {@link FakeSQLPlus} on
+ * the controller and on a local agent.
+ *
+ * Not run by the normal test phase; run it on Unix with
+ * <code>mvn test -Dtest=SQLPlusOverheadBenchmark -Dsqlplus.benchmark=true</code>.
+ * The other <code>sqlplus.benchmark.*</code> system properties change the
+ * number of builds, the concurrency levels and the fake SQL*Plus delay and
+ * exit code. Results are printed and written to
+ * <code>target/sqlplus-overhead.csv</code>.
+ *
+ * Overhead is the step time from the phase breakdown minus the SQL*Plus
+ * execution phase. Allocation adds up the threads alive at the end of a
+ * run, so short-lived threads are missed.
+ */
+public class SQLPlusOverheadBenchmark {
+
+	private static final String PROPERTY = "sqlplus.benchmark";
+
+	private static final int BUILDS = Integer.getInteger(PROPERTY + ".builds", 50);
+	private static final int WARMUP = Integer.getInteger(PROPERTY + ".warmup", 10);
+	private static final String CONCURRENCY = System.getProperty(PROPERTY + ".concurrency", "1,4,16");
+	private static final int DELAY = Integer.getInteger(PROPERTY + ".delay", 0);
+	private static final int EXIT_CODE = Integer.getInteger(PROPERTY + ".exitCode", 0);
+
+	private static final String CREDENTIALS_ID = "fake-oracle";
+	private static final String INSTANCE = "ORA";
+	private static final String SCRIPT = "SELECT * FROM DUAL;";
+	private static final String AGENT = "sqlplus-agent";
+	private static final String RESULTS = "target/sqlplus-overhead.csv";
+	private static final String HEADER = "node,concurrency,builds,throughput,overheadP50,overheadP95,buildP50,buildP95,cpuPerBuild,allocatedPerBuild";
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File oracleHome;
+
+	@BeforeClass
+	public static void enabled() {
+		assumeTrue(Boolean.getBoolean(PROPERTY));
+		assumeTrue(File.pathSeparatorChar == ':');
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		oracleHome = tempFolder.newFolder("oracle");
+		FakeSQLPlus.install(oracleHome, EXIT_CODE, DELAY);
+		SystemCredentialsProvider.getInstance().getCredentials().add(
+				new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, CREDENTIALS_ID, null, "scott", "tiger"));
+		SystemCredentialsProvider.getInstance().save();
+	}
+
+	@Test
+	public void controller() throws Exception {
+		List<String> results = new ArrayList<String>();
+		for (int concurrency : concurrencyLevels()) {
+			j.jenkins.setNumExecutors(concurrency);
+			results.add(run(j.jenkins, "controller", concurrency));
+		}
+		report(results);
+	}
+
+	@Test
+	public void agent() throws Exception {
+		j.jenkins.setNumExecutors(0);
+		List<String> results = new ArrayList<String>();
+		for (int concurrency : concurrencyLevels()) {
+			DumbSlave agent = new DumbSlave(AGENT + concurrency, "", tempFolder.newFolder(AGENT + concurrency).getPath(),
+					String.valueOf(concurrency), Node.Mode.NORMAL, "", j.createComputerLauncher(null),
+					RetentionStrategy.NOOP, Collections.<NodeProperty<?>> emptyList());
+			j.jenkins.addNode(agent);
+			j.waitOnline(agent);
+			results.add(run(agent, "agent", concurrency));
+			j.jenkins.removeNode(agent);
+		}
+		report(results);
+	}
+
+	private String run(Node node, String name, int concurrency) throws Exception {
+
+		FreeStyleProject project = j.createFreeStyleProject();
+		project.setAssignedNode(node);
+		project.setConcurrentBuild(true);
+		SQLPlusRunnerBuilder builder = new SQLPlusRunnerBuilder(CREDENTIALS_ID, INSTANCE,
+				ScriptType.userDefined.name(), null, SCRIPT);
+		builder.setCustomOracleHome(oracleHome.getPath());
+		project.getBuildersList().add(builder);
+
+		runBuilds(project, WARMUP, concurrency);
+
+		com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory
+				.getOperatingSystemMXBean();
+		long cpu = os.getProcessCpuTime();
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+
+		List<FreeStyleBuild> builds = runBuilds(project, BUILDS, concurrency);
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		cpu = os.getProcessCpuTime() - cpu;
+		allocated = allocatedBytes() - allocated;
+
+		List<Long> overheads = new ArrayList<Long>();
+		List<Long> durations = new ArrayList<Long>();
+		for (FreeStyleBuild build : builds) {
+			durations.add(build.getDuration());
+			PhaseTimingAction action = build.getAction(PhaseTimingAction.class);
+			if (action == null)
+				continue;
+			for (PhaseTimer step : action.getSteps()) {
+				overheads.add(step.getTotal() - step.getDuration(PhaseTimer.Phase.EXECUTION));
+			}
+		}
+
+		String result = String.format(Locale.ENGLISH, "%s,%d,%d,%.2f,%d,%d,%d,%d,%.2f,%d", name, concurrency,
+				builds.size(), builds.size() / seconds, percentile(overheads, 50), percentile(overheads, 95),
+				percentile(durations, 50), percentile(durations, 95), cpu / 1e6 / builds.size(),
+				allocated / builds.size());
+		System.out.println(HEADER);
+		System.out.println(result);
+		return result;
+	}
+
+	private List<FreeStyleBuild> runBuilds(FreeStyleProject project, int count, int concurrency) throws Exception {
+
+		List<FreeStyleBuild> builds = new ArrayList<FreeStyleBuild>();
+		for (int done = 0; done < count; done += concurrency) {
+			List<Future<FreeStyleBuild>> running = new ArrayList<Future<FreeStyleBuild>>();
+			for (int i = 0; i < Math.min(concurrency, count - done); i++) {
+				running.add(project.scheduleBuild2(0));
+			}
+			for (Future<FreeStyleBuild> future : running) {
+				FreeStyleBuild build = future.get();
+				if (EXIT_CODE == 0)
+					j.assertBuildStatus(Result.SUCCESS, build);
+				builds.add(build);
+			}
+		}
+		return builds;
+	}
+
+	private static List<Integer> concurrencyLevels() {
+		List<Integer> levels = new ArrayList<Integer>();
+		for (String level : CONCURRENCY.split(",")) {
+			levels.add(Integer.valueOf(level.trim()));
+		}
+		return levels;
+	}
+
+	/**
+	 * Bytes allocated so far by the live threads of this JVM.
+	 */
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long total = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (allocated > 0)
+				total += allocated;
+		}
+		return total;
+	}
+
+	private static long percentile(List<Long> values, int percentile) {
+		if (values.isEmpty())
+			return -1;
+		List<Long> sorted = new ArrayList<Long>(values);
+		Collections.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+		return sorted.get(Math.max(index, 0));
+	}
+
+	private static void report(List<String> results) throws IOException {
+		File file = new File(RESULTS);
+		boolean header = !file.exists();
+		file.getParentFile().mkdirs();
+		PrintWriter out = new PrintWriter(new FileWriter(file, true));
+		try {
+			if (header)
+				out.println(HEADER);
+			for (String result : results) {
+				out.println(result);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.BatchScript;
+import org.jenkinsci.plugins.sqlplus.script.runner.ScriptResult;
+import org.junit.Test;
+
+import hudson.FilePath;
+
+public class TestBatchScript {
+
+	private static final String INSTANCE = "xe";
+
+	/**
+	 * What SQL*Plus would print for the driver, up to the given script, which
+	 * fails.
+	 */
+	private static String output(String content, int failing) {
+
+		StringBuilder output = new StringBuilder();
+		for (String line : content.split("\n")) {
+			if (line.startsWith("PROMPT ")) {
+				output.append(line.substring("PROMPT ".length())).append('\n');
+			} else if (line.startsWith("@")) {
+				output.append("Table created.\n");
+				if (output.toString().contains(" BEGIN " + failing)) {
+					output.append("ORA-00942: table or view does not exist\n");
+					break;
+				}
+			}
+		}
+		return output.toString();
+	}
+
+	@Test
+	public void testAllScriptsRun() throws IOException {
+
+		List<FilePath> scripts = Arrays.asList(new FilePath(new File("a.sql")), new FilePath(new File("b.sql")));
+		BatchScript batch = new BatchScript(scripts);
+		String content = batch.getContent(true);
+		// the failed script does not leave its uncommitted changes behind
+		assertTrue(content.startsWith(
+				"WHENEVER SQLERROR EXIT FAILURE ROLLBACK\nWHENEVER OSERROR EXIT FAILURE ROLLBACK\n"));
+		assertTrue(content.endsWith("exit;\n"));
+
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		OutputStream out = batch.parse(console);
+		out.write(output(content, -1).getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		// markers are not shown
+		assertEquals("Table created.\nTable created.\n", console.toString(StandardCharsets.UTF_8.name()));
+
+		List<ScriptResult> results = batch.getResults(INSTANCE, 0);
+		assertEquals(ScriptResult.Status.SUCCESSFUL, results.get(0).getStatus());
+		assertEquals(ScriptResult.Status.SUCCESSFUL, results.get(1).getStatus());
+	}
+
+	@Test
+	public void testBatchStopsOnError() throws IOException {
+
+		List<FilePath> scripts = Arrays.asList(new FilePath(new File("a.sql")), new FilePath(new File("b.sql")),
+				new FilePath(new File("c.sql")));
+		BatchScript batch = new BatchScript(scripts);
+
+		OutputStream out = batch.parse(new ByteArrayOutputStream());
+		out.write(output(batch.getContent(true), 1).getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		List<ScriptResult> results = batch.getResults(INSTANCE, 1);
+		assertEquals(ScriptResult.Status.SUCCESSFUL, results.get(0).getStatus());
+		assertEquals(ScriptResult.Status.FAILED, results.get(1).getStatus());
+		assertEquals(1, results.get(1).getExitCode());
+		assertTrue(results.get(1).getExcerpt().contains("ORA-00942"));
+		assertEquals(ScriptResult.Status.NOT_RUN, results.get(2).getStatus());
+	}
+
+	@Test
+	public void testFailedMigrationRolledBack() {
+
+		List<FilePath> scripts = Arrays.asList(new FilePath(new File("V1__a.sql")), new FilePath(new File("V2__b.sql")));
+		BatchScript batch = new BatchScript(scripts, Arrays.asList("INSERT INTO t VALUES (1);\nCOMMIT;",
+				"INSERT INTO t VALUES (2);\nCOMMIT;"));
+		String content = batch.getContent(false);
+
+		// a failure rolls back the changes of the migration, which is not recorded
+		String[] lines = content.split("\n");
+		assertEquals("WHENEVER SQLERROR EXIT FAILURE ROLLBACK", lines[0]);
+		assertEquals("WHENEVER OSERROR EXIT FAILURE ROLLBACK", lines[1]);
+		assertTrue(content.indexOf("@\"" + new File("V1__a.sql").getPath() + "\"") < content
+				.indexOf("INSERT INTO t VALUES (1);"));
+		assertFalse(content.contains("exit;"));
+	}
+
+}
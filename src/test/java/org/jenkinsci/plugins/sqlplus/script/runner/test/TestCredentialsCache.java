@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.CredentialsCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+
+public class TestCredentialsCache {
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Test
+	public void testIndexClearedWhenStoreSaved() throws Exception {
+
+		SystemCredentialsProvider store = SystemCredentialsProvider.getInstance();
+		store.getCredentials().add(new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "reports", null,
+				"scott", "tiger"));
+		store.save();
+
+		FreeStyleProject project = j.createFreeStyleProject();
+		FreeStyleBuild build = j.buildAndAssertSuccess(project);
+		assertEquals("scott", CredentialsCache.find("reports", build).getUsername());
+		assertNull(CredentialsCache.find("missing", build));
+		assertNull(CredentialsCache.find("", build));
+
+		// not seen until the store is saved
+		store.getCredentials().add(new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "missing", null,
+				"hr", "hr"));
+		assertNull(CredentialsCache.find("missing", build));
+		store.save();
+		assertEquals("hr", CredentialsCache.find("missing", build).getUsername());
+
+		// a job of the same folder uses the same index
+		FreeStyleBuild other = j.buildAndAssertSuccess(j.createFreeStyleProject());
+		assertEquals("hr", CredentialsCache.find("missing", other).getUsername());
+	}
+
+}
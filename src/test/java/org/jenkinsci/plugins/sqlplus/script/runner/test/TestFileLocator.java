@@ -0,0 +1,74 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.FileLocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestFileLocator {
+
+	private static final String TNSNAMES_ORA = "tnsnames.ora";
+
+	@Rule
+	public TemporaryFolder oracleHome = new TemporaryFolder();
+
+	@Test
+	public void testNestedFile() throws IOException {
+
+		File expected = newFile("network", "admin", TNSNAMES_ORA);
+
+		Path found = FileLocator.find(oracleHome.getRoot().toPath(), TNSNAMES_ORA, 3);
+
+		assertEquals(expected.toPath(), found);
+	}
+
+	@Test
+	public void testMaxDepth() throws IOException {
+
+		newFile("network", "admin", TNSNAMES_ORA);
+
+		Path found = FileLocator.find(oracleHome.getRoot().toPath(), TNSNAMES_ORA, 2);
+
+		assertNull(found);
+	}
+
+	@Test
+	public void testSkippedDirectory() throws IOException {
+
+		newFile("inventory", TNSNAMES_ORA);
+
+		Path found = FileLocator.find(oracleHome.getRoot().toPath(), TNSNAMES_ORA, 3);
+
+		assertNull(found);
+	}
+
+	@Test
+	public void testShallowFileFirst() throws IOException {
+
+		newFile("a", "b", "sqlplus");
+		File expected = newFile("sqlplus");
+
+		Path found = FileLocator.find(oracleHome.getRoot().toPath(), "sqlplus", 3);
+
+		assertEquals(expected.toPath(), found);
+	}
+
+	private File newFile(String... path) throws IOException {
+
+		File file = oracleHome.getRoot();
+		for (String p : path) {
+			file = new File(file, p);
+		}
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+		return file;
+	}
+
+}
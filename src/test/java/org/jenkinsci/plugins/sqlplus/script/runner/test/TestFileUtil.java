@@ -1,13 +1,19 @@
 package org.jenkinsci.plugins.sqlplus.script.runner.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import org.jenkinsci.plugins.sqlplus.script.runner.FileUtil;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import hudson.FilePath;
 
@@ -16,8 +22,16 @@ public class TestFileUtil {
 	private static final String SCRIPT_SQL = "src/test/resources/script.sql";
 	private static final String SCRIPT2_SQL = "src/test/resources/script2.sql";
 
+	/** name of the scripts written to the temporary folder, which has no subdirectory */
+	private static final String TEMP_SQL = "script.sql";
+
+	private static final int TAIL_BLOCK_SIZE = 8192;
+
 	static final String WORK_DIR = System.getProperty("user.dir");
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	@Test
 	public void testExitInScriptFile() throws IOException,InterruptedException {
 
@@ -44,6 +58,75 @@ public class TestFileUtil {
 		assertFalse(hasExit);
 	}
 
+	@Test
+	public void testExitInLocalScriptFile() {
+
+		assertTrue(FileUtil.hasExitCode(new File(WORK_DIR + File.separator + SCRIPT_SQL)));
+		assertFalse(FileUtil.hasExitCode(new File(WORK_DIR + File.separator + SCRIPT2_SQL)));
+	}
+
+	@Test
+	public void testExitAcrossTailBlocks() throws IOException {
+
+		// the exit line starts in one block read and ends in the next one
+		StringBuilder content = new StringBuilder();
+		while (content.length() < TAIL_BLOCK_SIZE - 3)
+			content.append("--\n");
+		content.append("exit;\n\n  \n");
+
+		File file = tempFolder.newFile(TEMP_SQL);
+		Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+		assertTrue(FileUtil.hasExitCode(file));
+	}
+
+	@Test
+	public void testAddExitInTheEnd() throws IOException {
+
+		File file = tempFolder.newFile(TEMP_SQL);
+		Files.write(file.toPath(), "select * from dual;\r\n".getBytes(StandardCharsets.UTF_8));
+
+		assertFalse(FileUtil.hasExitCode(file));
+
+		FileUtil.addExitInTheEnd(file);
+
+		assertTrue(FileUtil.hasExitCode(file));
+		assertTrue(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)
+				.startsWith("select * from dual;\r\n"));
+	}
+
+	@Test
+	public void testPrepareInlineScript() {
+
+		String prepared = FileUtil.prepareScript("\uFEFFselect * from dual;\r\n", true);
+		assertTrue(prepared.startsWith("select * from dual;\r\n"));
+		assertTrue(FileUtil.hasExitCode(prepared));
+
+		// the exit found is kept, and none is added for pooled sessions
+		String withExit = "select 1 from dual;\nEXIT;\n\n  \n";
+		assertEquals(withExit, FileUtil.prepareScript(withExit, true));
+		assertEquals("select 1 from dual;", FileUtil.prepareScript("select 1 from dual;", false));
+		assertFalse(FileUtil.hasExitCode("exit;\nselect 1 from dual;"));
+		assertFalse(FileUtil.hasExitCode(""));
+	}
 
+	@Test
+	public void testNormalizeEncoding() throws IOException {
+
+		File file = tempFolder.newFile(TEMP_SQL);
+		byte[] script = "select '\u00e7' from dual;\n".getBytes(StandardCharsets.UTF_16LE);
+		byte[] content = new byte[script.length + 2];
+		content[0] = (byte) 0xFF;
+		content[1] = (byte) 0xFE;
+		System.arraycopy(script, 0, content, 2, script.length);
+		Files.write(file.toPath(), content);
+
+		assertEquals(StandardCharsets.UTF_16LE.name(), FileUtil.normalizeEncoding(file));
+		assertEquals("select '\u00e7' from dual;\n",
+				new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+		// already plain UTF-8
+		assertNull(FileUtil.normalizeEncoding(file));
+	}
 
 }
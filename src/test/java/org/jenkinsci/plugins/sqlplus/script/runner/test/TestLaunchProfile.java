@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.LaunchProfile;
+import org.jenkinsci.plugins.sqlplus.script.runner.OracleHomeResolution;
+import org.junit.Test;
+
+import hudson.EnvVars;
+
+public class TestLaunchProfile {
+
+	private static final String ORACLE_HOME = "/opt/oracle/product/19c";
+
+	private static OracleHomeResolution resolution(String tnsAdmin) {
+		return new OracleHomeResolution(ORACLE_HOME, ORACLE_HOME + "/bin/sqlplus", tnsAdmin,
+				ORACLE_HOME + "/lib:" + ORACLE_HOME, 1L);
+	}
+
+	@Test
+	public void testEnvironment() {
+
+		OracleHomeResolution resolution = resolution(ORACLE_HOME + "/network/admin");
+		LaunchProfile profile = LaunchProfile.get("node", resolution, null, null, ":");
+		assertEquals(ORACLE_HOME + "/bin/sqlplus", profile.getExecutable());
+		assertEquals(ORACLE_HOME + "/network/admin", profile.getTnsAdmin());
+
+		EnvVars build = new EnvVars();
+		build.put("BUILD_NUMBER", "7");
+		build.put("LD_LIBRARY_PATH", "/usr/local/lib");
+		EnvVars env = profile.apply(build);
+		assertEquals("7", env.get("BUILD_NUMBER"));
+		assertEquals(ORACLE_HOME, env.get("ORACLE_HOME"));
+		assertEquals(ORACLE_HOME + "/lib:" + ORACLE_HOME + ":/usr/local/lib", env.get("LD_LIBRARY_PATH"));
+		// the build environment is left as it was
+		assertEquals("/usr/local/lib", build.get("LD_LIBRARY_PATH"));
+	}
+
+	@Test
+	public void testCustomLocations() {
+
+		LaunchProfile profile = LaunchProfile.get("node", resolution(null), "/usr/bin/sqlplus", "/etc/oracle", ":");
+		assertEquals("/usr/bin/sqlplus", profile.getExecutable());
+		assertEquals("/etc/oracle", profile.getTnsAdmin());
+
+		assertNull(LaunchProfile.get("other", resolution(null), null, null, ":").getTnsAdmin());
+	}
+
+	@Test
+	public void testCache() {
+
+		OracleHomeResolution resolution = resolution(null);
+		LaunchProfile profile = LaunchProfile.get("cached", resolution, null, null, ":");
+		assertSame(profile, LaunchProfile.get("cached", resolution, null, null, ":"));
+
+		// a new resolution of the same ORACLE_HOME makes a new profile
+		assertTrue(profile != LaunchProfile.get("cached", resolution(null), null, null, ":"));
+	}
+
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.Migrations;
+import org.jenkinsci.plugins.sqlplus.script.runner.Migrations.Migration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestMigrations {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	@Test
+	public void testVersions() {
+
+		assertEquals("1", Migrations.normalizeVersion("001"));
+		assertEquals("2.10", Migrations.normalizeVersion("2_010"));
+		assertEquals("0", Migrations.normalizeVersion("000"));
+		assertTrue(Migrations.compareVersions("10", "9") > 0);
+		assertTrue(Migrations.compareVersions("2.1", "2.10") < 0);
+		assertEquals(0, Migrations.compareVersions("2", "2.0"));
+	}
+
+	@Test
+	public void testScan() throws IOException, InterruptedException {
+
+		write("V010__views.sql", "create view v as select * from t;\n");
+		write("V2__add_index.sql", "create index i on t (id);\n");
+		write("V1__create_tables.sql", "create table t (id number);\n");
+		write("README.txt", "not a migration\n");
+		write("setup.sql", "not a migration either\n");
+
+		FilePath directory = new FilePath(folder.getRoot());
+		Migrations migrations = Migrations.scan(directory);
+		List<Migration> list = migrations.getMigrations();
+		assertEquals(3, list.size());
+		assertEquals("V1__create_tables.sql", list.get(0).getName());
+		assertEquals("2", list.get(1).getVersion());
+		assertEquals("add index", list.get(1).getDescription());
+		assertEquals("10", list.get(2).getVersion());
+		assertEquals(3, migrations.getHashed());
+
+		// only the changed file is read again
+		assertEquals(0, Migrations.scan(directory).getHashed());
+		write("V2__add_index.sql", "create unique index i on t (id);\n");
+		Migrations changed = Migrations.scan(directory);
+		assertEquals(1, changed.getHashed());
+		assertTrue(!changed.getMigrations().get(1).getChecksum().equals(list.get(1).getChecksum()));
+	}
+
+	@Test
+	public void testPending() throws IOException, InterruptedException {
+
+		write("V1__create_tables.sql", "create table t (id number);\n");
+		write("V2__add_index.sql", "create index i on t (id);\n");
+		write("V3__views.sql", "create view v as select * from t;\n");
+		Migrations migrations = Migrations.scan(new FilePath(folder.getRoot()));
+		Migration first = migrations.getMigrations().get(0);
+
+		String output = "Connected.\nJENKINS-SQLPLUS-MIGRATION 1 " + first.getChecksum() + "\n";
+		Map<String, String> applied = Migrations.parseLedger(output);
+		assertEquals(1, applied.size());
+		List<Migration> pending = migrations.getPending(applied);
+		assertEquals(2, pending.size());
+		assertEquals("V2__add_index.sql", pending.get(0).getName());
+
+		Map<String, String> changed = new HashMap<String, String>();
+		changed.put("1", "0000");
+		try {
+			migrations.getPending(changed);
+			fail("changed migration not found");
+		} catch (RuntimeException expected) {
+		}
+
+		Map<String, String> newer = new HashMap<String, String>(applied);
+		newer.put("3", migrations.getMigrations().get(2).getChecksum());
+		try {
+			migrations.getPending(newer);
+			fail("out of order migration not found");
+		} catch (RuntimeException expected) {
+		}
+	}
+
+	@Test
+	public void testInsert() throws IOException, InterruptedException {
+
+		write("V1__tom's_&_jerry.sql", "select 1 from dual;\n");
+		Migration migration = Migrations.scan(new FilePath(folder.getRoot())).getMigrations().get(0);
+		String insert = Migrations.getInsert(migration, "job #1");
+		assertTrue(insert.contains("'tom''s + jerry'"));
+		assertTrue(insert.endsWith("COMMIT;"));
+	}
+
+}
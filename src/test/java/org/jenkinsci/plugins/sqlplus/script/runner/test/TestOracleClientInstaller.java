@@ -0,0 +1,97 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.FileUtil;
+import org.jenkinsci.plugins.sqlplus.script.runner.OracleClientInstallation;
+import org.jenkinsci.plugins.sqlplus.script.runner.OracleClientInstaller;
+import org.jenkinsci.plugins.sqlplus.script.runner.OracleHomeResolution;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.util.StreamTaskListener;
+
+public class TestOracleClientInstaller {
+
+	private static final String CLIENT_DIR = "instantclient_19_8";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * An Instant Client like zip, with SQL*Plus in the client directory.
+	 */
+	private File createZip() throws IOException {
+
+		File zip = folder.newFile("instantclient.zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			for (String name : new String[] { "sqlplus", "libclntsh.so", "glogin.sql" }) {
+				out.putNextEntry(new ZipEntry(CLIENT_DIR + "/" + name));
+				out.write(name.getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+		return zip;
+	}
+
+	@Test
+	public void testInstall() throws IOException, InterruptedException {
+
+		File zip = createZip();
+		String checksum = FileUtil.sha256(zip);
+		OracleClientInstaller installer = new OracleClientInstaller(null, zip.getAbsolutePath(), checksum,
+				CLIENT_DIR);
+		FilePath root = new FilePath(folder.newFolder("tools"));
+
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		FilePath home = installer.install(root, new StreamTaskListener(log));
+		assertTrue(home.child("sqlplus").exists());
+		assertEquals(checksum.substring(0, 16), home.getParent().getName());
+		assertTrue(log.size() > 0);
+
+		// installed once
+		log.reset();
+		assertEquals(home.getRemote(), installer.install(root, new StreamTaskListener(log)).getRemote());
+		assertEquals(0, log.size());
+		assertFalse(root.child(checksum.substring(0, 16) + ".zip").exists());
+
+		OracleHomeResolution resolution = OracleClientInstallation.resolve(home, true, ":");
+		assertEquals(home.child("sqlplus").getRemote(), resolution.getSqlplus());
+		assertNull(resolution.getTnsAdmin());
+	}
+
+	@Test
+	public void testWrongChecksum() throws IOException, InterruptedException {
+
+		File zip = createZip();
+		String checksum = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+		OracleClientInstaller installer = new OracleClientInstaller(null, zip.getAbsolutePath(), checksum,
+				CLIENT_DIR);
+		FilePath root = new FilePath(folder.newFolder("tools"));
+		try {
+			installer.install(root, new StreamTaskListener(new ByteArrayOutputStream()));
+			fail("corrupt zip installed");
+		} catch (AbortException expected) {
+		}
+		assertFalse(root.child(checksum.substring(0, 16)).exists());
+	}
+
+}
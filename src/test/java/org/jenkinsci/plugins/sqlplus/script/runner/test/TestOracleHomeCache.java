@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.OracleHomeCache;
+import org.jenkinsci.plugins.sqlplus.script.runner.OracleHomeResolution;
+import org.jenkinsci.plugins.sqlplus.script.runner.PhaseTimer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestOracleHomeCache {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File oracleHome;
+
+	private File bin;
+
+	private File admin;
+
+	@Before
+	public void setUp() throws Exception {
+		oracleHome = folder.newFolder("oracle");
+		bin = new File(oracleHome, "bin");
+		admin = new File(new File(oracleHome, "network"), "admin");
+		bin.mkdirs();
+		admin.mkdirs();
+		new File(bin, "sqlplus").createNewFile();
+		new File(admin, "tnsnames.ora").createNewFile();
+	}
+
+	private OracleHomeResolution resolve(String node, boolean assumeLayout) throws Exception {
+		return OracleHomeCache.resolve(node, new FilePath(oracleHome), true, false, assumeLayout, new PhaseTimer());
+	}
+
+	@Test
+	public void testResolvedAgainWhenOracleHomeChanges() throws Exception {
+
+		OracleHomeResolution resolution = resolve("agent1", false);
+		assertEquals(new File(bin, "sqlplus").getPath(), resolution.getSqlplus());
+		assertEquals(admin.getPath(), resolution.getTnsAdmin());
+		assertSame(resolution, resolve("agent1", false));
+
+		// tnsnames.ora moved to ORACLE_HOME
+		new File(admin, "tnsnames.ora").renameTo(new File(oracleHome, "tnsnames.ora"));
+		admin.setLastModified(OracleHomeCache.lastModified(new FilePath(oracleHome)) + 2000);
+		assertNull(OracleHomeCache.get("agent1", oracleHome.getPath(),
+				OracleHomeCache.lastModified(new FilePath(oracleHome))));
+
+		OracleHomeResolution changed = resolve("agent1", false);
+		assertFalse(resolution == changed);
+		assertEquals(oracleHome.getPath(), changed.getTnsAdmin());
+	}
+
+	@Test
+	public void testFileSearchTimedApart() throws Exception {
+
+		PhaseTimer timer = new PhaseTimer();
+		OracleHomeCache.resolve("agent4", new FilePath(oracleHome), true, false, false, timer);
+		assertTrue(timer.getPhases().contains(PhaseTimer.Phase.FILE_SEARCH));
+		assertTrue(timer.getPhases().contains(PhaseTimer.Phase.ORACLE_HOME));
+		assertTrue(timer.getDuration(PhaseTimer.Phase.ORACLE_HOME) >= 0);
+	}
+
+	@Test
+	public void testAssumedLayout() throws Exception {
+
+		new File(bin, "sqlplus").delete();
+		new File(admin, "tnsnames.ora").delete();
+		bin.setLastModified(bin.lastModified() + 2000);
+
+		OracleHomeResolution resolution = resolve("agent2", false);
+		assertNull(resolution.getSqlplus());
+		assertNull(resolution.getTnsAdmin());
+
+		OracleHomeCache.invalidate("agent2", oracleHome.getPath());
+		resolution = resolve("agent2", true);
+		assertEquals(new File(bin, "sqlplus").getPath(), resolution.getSqlplus());
+		assertEquals(oracleHome.getPath(), resolution.getTnsAdmin());
+	}
+
+	@Test
+	public void testInvalidateNode() throws Exception {
+
+		OracleHomeResolution resolution = resolve("agent3", false);
+		OracleHomeCache.put("agent30", resolution);
+		long lastModified = resolution.getLastModified();
+		assertNotNull(OracleHomeCache.get("agent3", oracleHome.getPath(), lastModified));
+
+		// only the entries of that node, even when another name starts with it
+		OracleHomeCache.invalidateNode("agent3");
+		assertNull(OracleHomeCache.get("agent3", oracleHome.getPath(), lastModified));
+		assertSame(resolution, OracleHomeCache.get("agent30", oracleHome.getPath(), lastModified));
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.OutputSpool;
+import org.junit.Test;
+
+public class TestOutputSpool {
+
+	private static String gunzip(byte[] data) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toString("UTF-8");
+	}
+
+	@Test
+	public void testHeadErrorsAndTail() throws Exception {
+
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		OutputSpool spool = new OutputSpool(new GZIPOutputStream(file), new PrintStream(console, true, "UTF-8"), 2,
+				3, 10);
+
+		StringBuilder output = new StringBuilder();
+		for (int i = 1; i <= 1000; i++) {
+			output.append(i == 500 ? "ORA-00001: unique constraint violated" : "1 row created.").append('\n');
+		}
+		output.append("Commit complete.");
+		spool.write(output.toString().getBytes(StandardCharsets.UTF_8));
+		spool.close();
+
+		assertEquals(1001, spool.getLines());
+		assertEquals(output.length(), spool.getBytes());
+		assertEquals(output.toString(), gunzip(file.toByteArray()));
+
+		String shown = console.toString("UTF-8");
+		String[] lines = shown.split("\n");
+		assertEquals(8, lines.length);
+		assertEquals("1 row created.", lines[0]);
+		assertEquals("1 row created.", lines[1]);
+		// lines[2] tells the rest is left out
+		assertEquals("500: ORA-00001: unique constraint violated", lines[3]);
+		// lines[4] tells the last lines follow
+		assertEquals("1 row created.", lines[5]);
+		assertEquals("1 row created.", lines[6]);
+		assertEquals("Commit complete.", lines[7]);
+		assertTrue(shown.endsWith("\n"));
+	}
+
+	@Test
+	public void testShortOutput() throws Exception {
+
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		OutputSpool spool = new OutputSpool(new GZIPOutputStream(file), new PrintStream(console, true, "UTF-8"), 100,
+				100, 100);
+		spool.write("SQL*Plus: Release 19.0.0.0.0\nConnected.\n".getBytes(StandardCharsets.UTF_8));
+		spool.close();
+
+		// nothing left out
+		assertEquals("SQL*Plus: Release 19.0.0.0.0\nConnected.\n", console.toString("UTF-8"));
+		assertFalse(console.toString("UTF-8").contains("..."));
+		assertEquals(2, spool.getLines());
+	}
+
+	@Test
+	public void testErrorLinesLimit() throws Exception {
+
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		OutputSpool spool = new OutputSpool(new GZIPOutputStream(new ByteArrayOutputStream()),
+				new PrintStream(console, true, "UTF-8"), 0, 0, 2);
+		for (int i = 0; i < 5; i++) {
+			spool.write("SP2-0734: unknown command\n".getBytes(StandardCharsets.UTF_8));
+		}
+		spool.close();
+
+		String[] lines = console.toString("UTF-8").split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("2: SP2-0734: unknown command", lines[2]);
+	}
+
+}
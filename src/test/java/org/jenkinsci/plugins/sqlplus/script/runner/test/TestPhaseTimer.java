@@ -0,0 +1,31 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.PhaseTimer;
+import org.jenkinsci.plugins.sqlplus.script.runner.PhaseTimer.Phase;
+import org.junit.Test;
+
+public class TestPhaseTimer {
+
+	@Test
+	public void testPhases() {
+
+		PhaseTimer timer = new PhaseTimer();
+		timer.add(Phase.EXECUTION, TimeUnit.MILLISECONDS.toNanos(300));
+		timer.add(Phase.ORACLE_HOME, TimeUnit.MILLISECONDS.toNanos(20));
+		timer.add(Phase.EXECUTION, TimeUnit.MILLISECONDS.toNanos(200));
+		timer.finish("test.sql");
+
+		assertEquals(Arrays.asList(Phase.ORACLE_HOME, Phase.EXECUTION), timer.getPhases());
+		assertEquals(500, timer.getDuration(Phase.EXECUTION));
+		assertEquals(0, timer.getDuration(Phase.LAUNCH));
+		assertEquals("test.sql", timer.getStep());
+		assertTrue(timer.getTotal() >= 0);
+	}
+
+}
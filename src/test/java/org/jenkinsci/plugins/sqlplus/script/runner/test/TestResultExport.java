@@ -0,0 +1,146 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.ResultExport;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestResultExport {
+
+	private static final String HEADINGS = "\"ID\",\"NAME\"\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String read(String path, boolean gzip) throws IOException {
+		InputStream in = new FileInputStream(path);
+		if (gzip)
+			in = new GZIPInputStream(in);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toString("UTF-8");
+	}
+
+	private static String rows(int from, int to) {
+		StringBuilder rows = new StringBuilder();
+		for (int i = from; i <= to; i++) {
+			rows.append(i).append(",\"name ").append(i).append("\"\n");
+		}
+		return rows.toString();
+	}
+
+	@Test
+	public void testNames() {
+
+		assertEquals("extracts/sales-TENANT1.csv", ResultExport.insertSuffix("extracts/sales.csv", "-TENANT1"));
+		assertEquals("extracts.d/sales-1", ResultExport.insertSuffix("extracts.d/sales", "-1"));
+		assertEquals("sales-002.csv.gz", ResultExport.getChunkName("sales.csv", 2, true, true));
+		assertEquals("sales.csv", ResultExport.getChunkName("sales.csv", 1, false, false));
+	}
+
+	@Test
+	public void testOneFile() throws Exception {
+
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		ResultExport export = new ResultExport(new File(folder.getRoot(), "sales.csv"), 0, false,
+				new PrintStream(console, true, "UTF-8"));
+		// headings are repeated on each page, and a blank line comes before them
+		String output = "\n" + HEADINGS + rows(1, 3) + "\n" + HEADINGS + rows(4, 5)
+				+ "ORA-01013: user requested cancel of current operation\n";
+		export.write(output.getBytes(StandardCharsets.UTF_8));
+		export.close();
+
+		assertEquals(5, export.getLines());
+		List<String> files = export.getFiles();
+		assertEquals(1, files.size());
+		assertEquals(HEADINGS + rows(1, 5), read(files.get(0), false));
+		assertEquals((HEADINGS + rows(1, 5)).length(), export.getBytes());
+		assertTrue(console.toString("UTF-8").startsWith("ORA-01013"));
+	}
+
+	@Test
+	public void testChunks() throws Exception {
+
+		// rows of the same length, 10 in each file
+		int chunkSize = HEADINGS.length() + rows(10, 19).length();
+		ResultExport export = new ResultExport(new File(folder.getRoot(), "sales.csv"), chunkSize, true,
+				new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"));
+		export.write((HEADINGS + rows(10, 34)).getBytes(StandardCharsets.UTF_8));
+		export.close();
+
+		assertEquals(25, export.getLines());
+		List<String> files = export.getFiles();
+		assertEquals(3, files.size());
+		assertTrue(files.get(0).endsWith("sales-001.csv.gz"));
+		assertEquals(HEADINGS + rows(10, 19), read(files.get(0), true));
+		assertEquals(HEADINGS + rows(20, 29), read(files.get(1), true));
+		assertEquals(HEADINGS + rows(30, 34), read(files.get(2), true));
+	}
+
+	@Test
+	public void testErrorCodesInData() throws Exception {
+
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		ResultExport export = new ResultExport(new File(folder.getRoot(), "errors.csv"), 0, false,
+				new PrintStream(console, true, "UTF-8"));
+		String data = HEADINGS + "1,\"ORA-00001: unique constraint violated\"\n" + "2,\"see\nORA-01555 below\"\n";
+		export.write((data + "ERROR:\nORA-01555: snapshot too old\n").getBytes(StandardCharsets.UTF_8));
+		export.close();
+
+		assertEquals(2, export.getLines());
+		assertEquals(data, read(export.getFiles().get(0), false));
+		assertEquals("ERROR:\nORA-01555: snapshot too old\n", console.toString("UTF-8"));
+	}
+
+	@Test
+	public void testQuotedLineBreaks() throws Exception {
+
+		// the second record spans three lines, a doubled quote among them
+		String first = "1,\"one line\"\n";
+		String second = "2,\"first\n\n\"\"third\"\" line\"\n";
+		ResultExport export = new ResultExport(new File(folder.getRoot(), "notes.csv"),
+				HEADINGS.length() + first.length() + 1, false,
+				new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"));
+		export.write((HEADINGS + first + second + first).getBytes(StandardCharsets.UTF_8));
+		export.close();
+
+		assertEquals(3, export.getLines());
+		List<String> files = export.getFiles();
+		assertEquals(3, files.size());
+		assertEquals(HEADINGS + first, read(files.get(0), false));
+		assertEquals(HEADINGS + second, read(files.get(1), false));
+		assertEquals(HEADINGS + first, read(files.get(2), false));
+	}
+
+	@Test
+	public void testScript() {
+
+		String script = ResultExport.getScript("/ws/sales.sql");
+		assertTrue(script.contains("SET MARKUP CSV ON"));
+		assertTrue(script.contains("@\"/ws/sales.sql\"\n"));
+		assertTrue(script.endsWith("EXIT\n"));
+
+		String inline = ResultExport.getInlineScript("SELECT * FROM SALES;");
+		assertTrue(inline.contains("SET MARKUP CSV ON"));
+		assertTrue(inline.contains("\nSELECT * FROM SALES;\nEXIT\n"));
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusOutputFilter;
+import org.junit.Test;
+
+public class TestSQLPlusOutputFilter {
+
+	private static final String OUTPUT = "Table created.\n" + "select * from missing\n" + "              *\n"
+			+ "ERROR at line 1:\n" + "ORA-00942: table or view does not exist\n" + "\n"
+			+ "SP2-0310: unable to open file \"missing.sql\"\n" + "LINE/COL ERROR\n"
+			+ "3/5      PLS-00201: identifier 'X' must be declared\n" + "ORACLE_HOME is set";
+
+	@Test
+	public void testErrorsFound() throws IOException {
+
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		SQLPlusOutputFilter filter = new SQLPlusOutputFilter(console, false);
+		filter.write(OUTPUT.getBytes(StandardCharsets.UTF_8));
+		filter.close();
+
+		assertEquals(OUTPUT, console.toString(StandardCharsets.UTF_8.name()));
+		assertEquals(3, filter.getErrorCount());
+		assertEquals(3, filter.getErrors().size());
+		assertFalse(filter.isKilled());
+	}
+
+	@Test
+	public void testFailFast() throws IOException {
+
+		SQLPlusOutputFilter filter = new SQLPlusOutputFilter(new ByteArrayOutputStream(), true);
+		filter.write("Table created.\n".getBytes(StandardCharsets.UTF_8));
+		assertFalse(filter.isKilled());
+
+		filter.write("ORA-01017: invalid username/password; logon denied\n".getBytes(StandardCharsets.UTF_8));
+		assertTrue(filter.isKilled());
+	}
+
+}
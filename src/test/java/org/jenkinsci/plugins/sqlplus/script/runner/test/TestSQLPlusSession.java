@@ -0,0 +1,132 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.UUID;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusSession;
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusSessionPool;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestSQLPlusSession {
+
+	private static final String LOGON = "scott/tiger@ORA";
+
+	/**
+	 * Answers like <code>sqlplus -S /nolog</code>: each logon starts a new
+	 * database session, with the schema of the user, and is denied while the
+	 * lock file exists.
+	 */
+	private static final String FAKE_SESSION = "schema=; connected=\n"
+			+ "while IFS= read -r line; do\n"
+			+ "  case \"$line\" in\n"
+			+ "    \"CONNECT \"*) if [ -f \"$LOCK\" ]; then connected=;"
+			+ " echo 'ORA-01017: invalid username/password; logon denied';"
+			+ " else connected=1; schema=SCOTT; fi ;;\n"
+			+ "    \"ALTER SESSION SET CURRENT_SCHEMA = \"*) schema=\"${line##* }\" ;;\n"
+			+ "    \"SELECT \"?\"JENKINS-SQLPLUS-\"*) if [ -n \"$connected\" ]; then m=\"${line#SELECT ?}\";"
+			+ " echo \"${m%%[!A-Za-z0-9-]*}CONNECTED\"; fi ;;\n"
+			+ "    \"SHOW SCHEMA\") echo \"schema $schema\" ;;\n"
+			+ "    \"PROMPT \"*) echo \"${line#PROMPT }\" ;;\n"
+			+ "    EXIT) exit 0 ;;\n"
+			+ "  esac\n"
+			+ "done\n";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	private File lock;
+
+	@Before
+	public void unix() {
+		assumeTrue(File.pathSeparatorChar == ':');
+	}
+
+	private SQLPlusSession start(String key) throws Exception {
+		lock = new File(tempFolder.getRoot(), "lock");
+		LocalProc proc = new LocalProc("LOCK='" + lock.getPath() + "'\n" + FAKE_SESSION);
+		return SQLPlusSession.open(key, LOGON, proc, new FilePath(tempFolder.getRoot()));
+	}
+
+	@Test
+	public void testNewDatabaseSessionForEachScript() throws Exception {
+
+		SQLPlusSession session = start(UUID.randomUUID().toString());
+		try {
+			assertTrue(session.connect(output));
+
+			assertEquals(0, session.execute("ALTER SESSION SET CURRENT_SCHEMA = HR\nSHOW SCHEMA", output));
+			assertTrue(output.toString("UTF-8").contains("schema HR"));
+
+			// the next script does not get the schema of the previous one
+			output.reset();
+			assertEquals(0, session.execute("SHOW SCHEMA", output));
+			assertTrue(output.toString("UTF-8").contains("schema SCOTT"));
+			assertTrue(session.isReusable());
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void testLogonDenied() throws Exception {
+
+		SQLPlusSession session = start(UUID.randomUUID().toString());
+		try {
+			assertTrue(lock.createNewFile());
+			assertFalse(session.connect(output));
+			assertTrue(output.toString("UTF-8").contains("ORA-01017"));
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void testNotReusedWhenLogonFailsAfterScript() throws Exception {
+
+		String key = UUID.randomUUID().toString();
+		SQLPlusSession session = start(key);
+		assertTrue(session.connect(output));
+		assertTrue(lock.createNewFile());
+
+		// the script itself ran
+		assertEquals(0, session.execute("SHOW SCHEMA", output));
+		assertFalse(session.isReusable());
+
+		SQLPlusSessionPool.release(session);
+		assertNull(SQLPlusSessionPool.borrow(key, LOGON));
+	}
+
+	@Test
+	public void testPoolByKeyAndLogon() throws Exception {
+
+		String key = UUID.randomUUID().toString();
+		assertNull(SQLPlusSessionPool.borrow(key, LOGON));
+
+		SQLPlusSession session = start(key);
+		assertTrue(session.connect(output));
+		SQLPlusSessionPool.release(session);
+		assertSame(session, SQLPlusSessionPool.borrow(key, LOGON));
+		assertNull(SQLPlusSessionPool.borrow(key, LOGON));
+
+		// another logon, after a password change for instance, closes it
+		SQLPlusSessionPool.release(session);
+		assertNull(SQLPlusSessionPool.borrow(key, "scott/lion@ORA"));
+		assertNull(SQLPlusSessionPool.borrow(key, LOGON));
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.RestartableJenkinsRule;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+
+import hudson.model.Result;
+
+/**
+ * The <code>sqlplus</code> step against {@link FakeSQLPlus}, across a
+ * controller restart (Unix only).
+ */
+public class TestSQLPlusStep {
+
+	private static final String CREDENTIALS_ID = "fake-oracle";
+	private static final String JOB = "sqlplus-step";
+	private static final String BANNER = "Connected to:";
+	private static final String DISCONNECTED = "Disconnected from Oracle Database";
+
+	@Rule
+	public RestartableJenkinsRule story = new RestartableJenkinsRule();
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void unix() {
+		assumeTrue(File.pathSeparatorChar == ':');
+	}
+
+	/**
+	 * Installs a fake SQL*Plus and creates a job running a user defined
+	 * script with it.
+	 */
+	private WorkflowJob createJob(int exitCode, long delay) throws Exception {
+
+		File oracleHome = tempFolder.newFolder("oracle");
+		FakeSQLPlus.install(oracleHome, exitCode, delay);
+		SystemCredentialsProvider.getInstance().getCredentials().add(
+				new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, CREDENTIALS_ID, null, "scott", "tiger"));
+		SystemCredentialsProvider.getInstance().save();
+
+		WorkflowJob job = story.j.createProject(WorkflowJob.class, JOB);
+		job.setDefinition(new CpsFlowDefinition("node {\n" //
+				+ "  sqlplus credentialsId: '" + CREDENTIALS_ID + "', instance: 'ORA', customOracleHome: '"
+				+ oracleHome.getAbsolutePath() + "', scriptContent: 'SELECT * FROM DUAL;'\n" //
+				+ "}\n", true));
+		return job;
+	}
+
+	@Test
+	public void testCompletes() {
+
+		story.addStep(new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				WorkflowRun run = story.j.assertBuildStatusSuccess(createJob(0, 0).scheduleBuild2(0));
+				story.j.assertLogContains(DISCONNECTED, run);
+			}
+		});
+	}
+
+	@Test
+	public void testFailsOnExitCode() {
+
+		story.addStep(new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				WorkflowRun run = createJob(1, 0).scheduleBuild2(0).get();
+				story.j.assertBuildStatus(Result.FAILURE, run);
+			}
+		});
+	}
+
+	@Test
+	public void testResumesAfterRestart() {
+
+		story.addStep(new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				WorkflowRun run = createJob(0, 5000).scheduleBuild2(0).waitForStart();
+				story.j.waitForMessage(BANNER, run);
+			}
+		});
+		// SQL*Plus kept running while the controller was down
+		story.addStep(new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				WorkflowRun run = story.j.jenkins.getItemByFullName(JOB, WorkflowJob.class).getBuildByNumber(1);
+				story.j.assertBuildStatusSuccess(story.j.waitForCompletion(run));
+				story.j.assertLogContains(DISCONNECTED, run);
+			}
+		});
+	}
+
+}
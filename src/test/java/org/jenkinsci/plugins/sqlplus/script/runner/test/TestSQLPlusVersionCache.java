@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusVersionCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestSQLPlusVersionCache {
+
+	private static final String VERSION = "\nSQL*Plus: Release 19.0.0.0.0 - Production\nVersion 19.3.0.0.0\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testProbedAgainWhenExecutableChanges() throws Exception {
+
+		File sqlplus = folder.newFile("sqlplus");
+		FilePath executable = new FilePath(sqlplus);
+		assertNull(SQLPlusVersionCache.fingerprint(new FilePath(new File(folder.getRoot(), "missing"))));
+
+		String fingerprint = SQLPlusVersionCache.fingerprint(executable);
+		SQLPlusVersionCache.put("agent1", fingerprint, VERSION);
+		assertEquals(VERSION, SQLPlusVersionCache.get("agent1", fingerprint));
+		assertNull(SQLPlusVersionCache.get("agent2", fingerprint));
+
+		// a new client installed at the same path
+		Files.write(sqlplus.toPath(), "#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+		sqlplus.setLastModified(sqlplus.lastModified() + 2000);
+		String changed = SQLPlusVersionCache.fingerprint(executable);
+		assertFalse(fingerprint.equals(changed));
+		assertNull(SQLPlusVersionCache.get("agent1", changed));
+	}
+
+	@Test
+	public void testDetectedUntilNodeOffline() {
+
+		SQLPlusVersionCache.detected("agent3", "/oracle/bin/sqlplus", SQLPlusVersionCache.getRelease(VERSION));
+		SQLPlusVersionCache.put("agent3", "/oracle/bin/sqlplus|1|1", VERSION);
+		assertEquals("SQL*Plus: Release 19.0.0.0.0 - Production", SQLPlusVersionCache.getDetected("agent3").getRelease());
+		assertEquals("/oracle/bin/sqlplus", SQLPlusVersionCache.getDetected("agent3").getExecutable());
+
+		// an unknown version leaves the last one
+		SQLPlusVersionCache.detected("agent3", "/other/bin/sqlplus", SQLPlusVersionCache.getRelease(""));
+		assertEquals("/oracle/bin/sqlplus", SQLPlusVersionCache.getDetected("agent3").getExecutable());
+
+		SQLPlusVersionCache.invalidateNode("agent3");
+		assertNull(SQLPlusVersionCache.getDetected("agent3"));
+		assertNull(SQLPlusVersionCache.get("agent3", "/oracle/bin/sqlplus|1|1"));
+	}
+
+}
@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusWatchdog;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSQLPlusWatchdog {
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	@Before
+	public void unix() {
+		assumeTrue(File.pathSeparatorChar == ':');
+	}
+
+	@Test
+	public void testExitSentOnTimeout() throws Exception {
+
+		// ends on the EXIT line, like SQL*Plus waiting for input
+		final LocalProc proc = new LocalProc("while read line; do [ \"$line\" = EXIT ] && exit 0; done; exit 2");
+		SQLPlusWatchdog watchdog = new SQLPlusWatchdog(System.currentTimeMillis() + 200,
+				new PrintStream(output, true));
+
+		long start = System.currentTimeMillis();
+		int exitCode = watchdog.await(proc.joining(), proc, proc.getStdin());
+
+		assertTrue(watchdog.isTimedOut());
+		assertEquals(0, exitCode);
+		assertFalse(proc.killed);
+		assertTrue(System.currentTimeMillis() - start < SQLPlusWatchdog.GRACE_PERIOD);
+	}
+
+	@Test
+	public void testKilledWithoutInput() throws Exception {
+
+		final LocalProc proc = new LocalProc("sleep 30");
+		SQLPlusWatchdog watchdog = new SQLPlusWatchdog(System.currentTimeMillis() + 200,
+				new PrintStream(output, true));
+
+		long start = System.currentTimeMillis();
+		int exitCode = watchdog.await(proc.joining(), proc, null);
+
+		assertTrue(watchdog.isTimedOut());
+		assertTrue(proc.killed);
+		assertTrue(exitCode != 0);
+		assertTrue(System.currentTimeMillis() - start < 10000);
+	}
+
+	@Test
+	public void testNoDeadline() throws Exception {
+
+		final LocalProc proc = new LocalProc("exit 3");
+		SQLPlusWatchdog watchdog = new SQLPlusWatchdog(0, new PrintStream(output, true));
+
+		assertEquals(3, watchdog.await(proc.joining(), proc, null));
+		assertFalse(watchdog.isTimedOut());
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.ScriptLedger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestScriptLedger {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testKey() throws IOException, InterruptedException {
+
+		FilePath script = new FilePath(folder.newFile("v1.sql"));
+		script.write("create table t (id number);\n", "UTF-8");
+		String hash = ScriptLedger.hash(script);
+
+		FilePath copy = new FilePath(folder.newFile("copy.sql"));
+		copy.write("create table t (id number);\n", "UTF-8");
+		assertEquals(hash, ScriptLedger.hash(copy));
+
+		copy.write("create table t (id number) ;\n", "UTF-8");
+		assertFalse(hash.equals(ScriptLedger.hash(copy)));
+
+		assertEquals(ScriptLedger.key(hash, "orcl", "scott"), ScriptLedger.key(hash, "ORCL", "SCOTT"));
+		assertFalse(ScriptLedger.key(hash, "orcl", "scott").equals(ScriptLedger.key(hash, "orcl2", "scott")));
+		assertFalse(ScriptLedger.key(hash, "orcl", "scott").equals(ScriptLedger.key(hash, "orcl", "hr")));
+	}
+
+}
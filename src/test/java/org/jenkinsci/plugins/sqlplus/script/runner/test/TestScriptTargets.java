@@ -0,0 +1,151 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.SQLPlusRunnerBuilder;
+import org.jenkinsci.plugins.sqlplus.script.runner.ScriptResult;
+import org.jenkinsci.plugins.sqlplus.script.runner.ScriptResultsAction;
+import org.jenkinsci.plugins.sqlplus.script.runner.ScriptType;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+
+/**
+ * Script lists and instance lists, run against {@link FakeSQLPlus}, which
+ * logs when each run starts and ends (Unix only).
+ */
+public class TestScriptTargets {
+
+	private static final String CREDENTIALS_ID = "fake-oracle";
+	private static final long DELAY = 500;
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private File oracleHome;
+
+	private File runs;
+
+	private File workspace;
+
+	@BeforeClass
+	public static void unix() {
+		assumeTrue(File.pathSeparatorChar == ':');
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		oracleHome = tempFolder.newFolder("oracle");
+		runs = new File(tempFolder.getRoot(), "runs.log");
+		FakeSQLPlus.install(oracleHome, 0, DELAY, runs);
+		SystemCredentialsProvider.getInstance().getCredentials().add(
+				new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, CREDENTIALS_ID, null, "scott", "tiger"));
+		SystemCredentialsProvider.getInstance().save();
+
+		workspace = tempFolder.newFolder("workspace");
+		File sql = new File(workspace, "sql");
+		sql.mkdirs();
+		for (String name : new String[] { "a.sql", "b.sql", "c.sql", "notes.txt" }) {
+			Files.write(new File(sql, name).toPath(), "SELECT * FROM DUAL;\n".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private FreeStyleBuild build(String instance, String script, int maxSessions, int maxInstances)
+			throws Exception {
+
+		FreeStyleProject project = j.createFreeStyleProject();
+		project.setCustomWorkspace(workspace.getPath());
+		SQLPlusRunnerBuilder builder = new SQLPlusRunnerBuilder(CREDENTIALS_ID, instance, ScriptType.fileList.name(),
+				script, null);
+		builder.setCustomOracleHome(oracleHome.getPath());
+		builder.setMaxSessions(maxSessions);
+		builder.setMaxInstances(maxInstances);
+		project.getBuildersList().add(builder);
+		return j.buildAndAssertSuccess(project);
+	}
+
+	/**
+	 * @return most runs at the same time, on all instances when
+	 *         <code>byInstance</code> is false, or on the busiest instance
+	 */
+	private int mostAtOnce(boolean byInstance) throws IOException {
+
+		Map<String, Integer> running = new HashMap<String, Integer>();
+		int most = 0;
+		for (String line : Files.readAllLines(runs.toPath(), StandardCharsets.UTF_8)) {
+			String[] fields = line.split(" ");
+			Integer count = running.get(fields[1]);
+			count = (count == null ? 0 : count) + ("start".equals(fields[0]) ? 1 : -1);
+			if (count == 0)
+				running.remove(fields[1]);
+			else
+				running.put(fields[1], count);
+			if (byInstance)
+				most = Math.max(most, count);
+			else
+				most = Math.max(most, running.size());
+		}
+		return most;
+	}
+
+	@Test
+	public void testOneInstanceAtATime() throws Exception {
+
+		FreeStyleBuild build = build("ORA1,ORA2", "sql/*.sql", 2, 1);
+
+		assertEquals(6, build.getAction(ScriptResultsAction.class).getResults().size());
+		assertEquals(1, mostAtOnce(false));
+		assertTrue(mostAtOnce(true) <= 2);
+	}
+
+	@Test
+	public void testInstancesAndSessionsLimited() throws Exception {
+
+		FreeStyleBuild build = build("ORA1\nORA2\nORA3", "sql/*.sql", 1, 2);
+
+		assertEquals(9, build.getAction(ScriptResultsAction.class).getResults().size());
+		assertTrue(mostAtOnce(false) <= 2);
+		assertEquals(1, mostAtOnce(true));
+	}
+
+	@Test
+	public void testScriptListOrder() throws Exception {
+
+		// listed files first, then the pattern matches by name, each once
+		FreeStyleBuild build = build("ORA", "sql/b.sql, sql/*.sql", 1, 1);
+
+		List<ScriptResult> results = build.getAction(ScriptResultsAction.class).getResults();
+		assertEquals(3, results.size());
+		assertTrue(results.get(0).getScript().endsWith("b.sql"));
+		assertTrue(results.get(1).getScript().endsWith("a.sql"));
+		assertTrue(results.get(2).getScript().endsWith("c.sql"));
+		for (ScriptResult result : results) {
+			assertTrue(result.isSuccessful());
+			assertEquals("ORA", result.getInstance());
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.StatementTiming;
+import org.jenkinsci.plugins.sqlplus.script.runner.TimingScript;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestTimingScript {
+
+	private static final List<String> SCRIPT = Arrays.asList(
+			"-- deployment",
+			"SET SERVEROUTPUT ON",
+			"create table t (",
+			"  id number",
+			");",
+			"",
+			"/* comment",
+			"   over lines */",
+			"create or replace procedure p as",
+			"begin",
+			"  null;",
+			"end;",
+			"/",
+			"update t set id = 1",
+			"/",
+			"alter user app identified by secret;",
+			"exit;");
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testFindStatements() {
+
+		List<String> texts = new ArrayList<String>();
+		List<Integer> starts = TimingScript.findStatements(SCRIPT, texts);
+
+		assertEquals(Arrays.asList(1, 2, 8, 13, 15, 16), starts);
+		assertEquals("create table t (", texts.get(1));
+		// passwords are not kept
+		assertEquals("alter user app identified by ********", texts.get(4));
+	}
+
+	@Test
+	public void testParseOutput() {
+
+		assertEquals(83010, TimingScript.parseElapsed("Elapsed: 00:01:23.01"));
+		assertEquals(-1, TimingScript.parseElapsed("Table created."));
+		assertEquals(3, TimingScript.parseRows("3 rows updated."));
+		assertEquals(1, TimingScript.parseRows("1 row created."));
+		assertEquals(0, TimingScript.parseRows("no rows selected"));
+		assertEquals(-1, TimingScript.parseRows("Procedure created."));
+	}
+
+	@Test
+	public void testTimings() throws IOException, InterruptedException {
+
+		File script = tempFolder.newFile("deploy.sql");
+		Files.write(script.toPath(), SCRIPT, StandardCharsets.UTF_8);
+
+		TimingScript timing = TimingScript.instrument(new FilePath(script));
+		List<String> copy = Files.readAllLines(new File(timing.getScript().getRemote()).toPath(),
+				StandardCharsets.UTF_8);
+		assertEquals("SET TIMING ON", copy.get(0));
+
+		// what SQL*Plus prints for the copy
+		StringBuilder output = new StringBuilder();
+		for (String line : copy) {
+			if (line.startsWith("PROMPT "))
+				output.append(line.substring("PROMPT ".length())).append('\n');
+			else if (line.equals("/") && output.toString().endsWith(" 3\n"))
+				output.append("2 rows updated.\n\nElapsed: 00:00:02.50\n");
+			else if (line.equals(");"))
+				output.append("Table created.\n\nElapsed: 00:00:00.10\n");
+		}
+
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		OutputStream out = timing.parse(console);
+		out.write(output.toString().getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		assertTrue(!console.toString(StandardCharsets.UTF_8.name()).contains("JENKINS-SQLPLUS-TIMING"));
+
+		List<StatementTiming> timings = timing.getTimings("deploy.sql", "xe");
+		assertEquals(2, timings.size());
+		assertEquals(3, timings.get(0).getLine());
+		assertEquals(100, timings.get(0).getElapsed());
+		assertEquals(-1, timings.get(0).getRows());
+		assertEquals(14, timings.get(1).getLine());
+		assertEquals(2500, timings.get(1).getElapsed());
+		assertEquals(2, timings.get(1).getRows());
+	}
+
+}
@@ -0,0 +1,145 @@
+package org.jenkinsci.plugins.sqlplus.script.runner.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jenkinsci.plugins.sqlplus.script.runner.TnsNames;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class TestTnsNames {
+
+	private static final String TNSNAMES = "# local databases\n" //
+			+ "XE =\n" //
+			+ "  (DESCRIPTION =\n" //
+			+ "    (ADDRESS = (PROTOCOL = TCP)(HOST = localhost)(PORT = 1521))\n" //
+			+ "    (CONNECT_DATA = (SERVER = DEDICATED) (SERVICE_NAME = XE))\n" //
+			+ "  )\n" //
+			+ "\n" //
+			+ "orcl.world, ORCL = (DESCRIPTION=(ADDRESS=(PROTOCOL=TCP)(HOST=db1)(PORT=1522))(CONNECT_DATA=(SID=ORCL)))\n"
+			+ "IFILE = shared.ora\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private void write(String name, String content) throws IOException {
+		Files.write(new File(folder.getRoot(), name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testParse() {
+
+		List<String> includes = new ArrayList<String>();
+		Map<String, String> descriptors = TnsNames.parse(TNSNAMES, includes);
+		assertEquals(3, descriptors.size());
+		assertEquals("localhost:1521/XE", TnsNames.describe(descriptors.get("XE")));
+		assertEquals("db1:1522/ORCL", TnsNames.describe(descriptors.get("ORCL.WORLD")));
+		assertEquals(descriptors.get("ORCL"), descriptors.get("ORCL.WORLD"));
+		assertEquals(1, includes.size());
+		assertEquals("shared.ora", includes.get(0));
+	}
+
+	@Test
+	public void testIsAlias() {
+
+		assertTrue(TnsNames.isAlias("ORCL"));
+		assertTrue(TnsNames.isAlias("orcl.world"));
+		assertFalse(TnsNames.isAlias(null));
+		assertFalse(TnsNames.isAlias("db1:1521/ORCL"));
+		assertFalse(TnsNames.isAlias("//db1/ORCL"));
+		assertFalse(TnsNames.isAlias("(DESCRIPTION=(ADDRESS=(HOST=db1)))"));
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+
+		write(TnsNames.TNSNAMES_ORA, TNSNAMES);
+		write("shared.ora", "REPORTS = (DESCRIPTION=(ADDRESS=(HOST=reports)(PORT=1521))(CONNECT_DATA=(SERVICE_NAME=rep)))\n"
+				+ "IFILE = " + new File(folder.getRoot(), TnsNames.TNSNAMES_ORA).getAbsolutePath() + "\n");
+
+		FilePath tnsAdmin = new FilePath(folder.getRoot());
+		TnsNames tnsNames = TnsNames.load(tnsAdmin);
+		assertTrue(tnsNames.isComplete());
+		assertEquals("[ORCL, ORCL.WORLD, REPORTS, XE]", tnsNames.getAliases().toString());
+		assertEquals("reports:1521/rep", TnsNames.describe(tnsNames.getDescriptor("reports")));
+		assertNull(tnsNames.getDescriptor("MISSING"));
+
+		// kept while no file changes
+		assertSame(tnsNames, TnsNames.load(tnsAdmin));
+
+		File shared = new File(folder.getRoot(), "shared.ora");
+		write("shared.ora", "");
+		shared.setLastModified(shared.lastModified() + 2000);
+		assertNull(TnsNames.load(tnsAdmin).getDescriptor("REPORTS"));
+	}
+
+	@Test
+	public void testOtherNamingMethods() throws Exception {
+
+		write(TnsNames.TNSNAMES_ORA, TNSNAMES);
+		write(TnsNames.SQLNET_ORA, "NAMES.DIRECTORY_PATH = (TNSNAMES, LDAP, EZCONNECT)\n");
+		assertFalse(TnsNames.load(new FilePath(folder.getRoot())).isComplete());
+
+		assertTrue(TnsNames.isTnsNamesOnly("# NAMES.DIRECTORY_PATH = (LDAP)\nSQLNET.EXPIRE_TIME = 10\n"));
+		assertTrue(TnsNames.isTnsNamesOnly("names.directory_path = (tnsnames, ezconnect)"));
+		assertFalse(TnsNames.isTnsNamesOnly("NAMES.DIRECTORY_PATH = (EZCONNECT)"));
+	}
+
+	@Test
+	public void testDefaultDomain() throws Exception {
+
+		write(TnsNames.TNSNAMES_ORA, "SALES.WORLD = (DESCRIPTION=(ADDRESS=(HOST=db2))(CONNECT_DATA=(SERVICE_NAME=sales)))\n");
+		write(TnsNames.SQLNET_ORA, "NAMES.DEFAULT_DOMAIN = world\n");
+		TnsNames tnsNames = TnsNames.load(new FilePath(folder.getRoot()));
+		assertEquals("WORLD", tnsNames.getDefaultDomain());
+		assertEquals("db2/sales", TnsNames.describe(tnsNames.getDescriptor("sales")));
+		assertNull(tnsNames.getDescriptor("sales.example"));
+
+		assertEquals("EXAMPLE.COM", TnsNames.getDefaultDomain("names.default_domain=.example.com"));
+		assertNull(TnsNames.getDefaultDomain("# NAMES.DEFAULT_DOMAIN = world"));
+	}
+
+	@Test
+	public void testEzConnectHosts() throws Exception {
+
+		write(TnsNames.TNSNAMES_ORA, TNSNAMES);
+		assertTrue(TnsNames.load(new FilePath(folder.getRoot())).isEzConnect());
+
+		assertTrue(TnsNames.usesEzConnect("SQLNET.EXPIRE_TIME = 10"));
+		assertTrue(TnsNames.usesEzConnect("NAMES.DIRECTORY_PATH = (TNSNAMES, EZCONNECT)"));
+		assertFalse(TnsNames.usesEzConnect("NAMES.DIRECTORY_PATH = (TNSNAMES)"));
+
+		assertTrue(TnsNames.isHostName("dbhost"));
+		assertTrue(TnsNames.isHostName("db-1.example.com"));
+		assertFalse(TnsNames.isHostName("SALES_DW"));
+		assertFalse(TnsNames.isHostName("ORCL$1"));
+
+		// a mistyped alias is a valid host name, but does not resolve
+		assertTrue(TnsNames.resolvesHost(null, "localhost"));
+		assertFalse(TnsNames.resolvesHost(null, "orlc.invalid"));
+	}
+
+	@Test
+	public void testWithoutTnsNames() throws Exception {
+
+		TnsNames tnsNames = TnsNames.load(new FilePath(folder.newFolder()));
+		assertNull(tnsNames.getFile());
+		assertFalse(tnsNames.isComplete());
+		assertTrue(tnsNames.getAliases().isEmpty());
+	}
+
+}